@@ -2,8 +2,10 @@ package ch.hftm.relationaldatabases.transferdemo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class TransferdemoApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,55 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Provides the Caffeine backed JCache regions of the Hibernate second-level cache, sized from {@link NoteProperties},
+ * and publishes their hit, miss and eviction counts as {@code cache.*} metrics.
+ */
+@Configuration(proxyBeanMethods = false)
+public class HibernateCacheConfig {
+
+  @Bean(destroyMethod = "close")
+  CacheManager hibernateCacheManager(NoteProperties properties) {
+    // one cache manager per application context, the default one is shared JVM-wide, e.g. by test contexts
+    // running against different databases
+    var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    var cacheManager = provider.getCacheManager(
+        URI.create("hibernate-" + UUID.randomUUID()), provider.getDefaultClassLoader());
+
+    var cache = properties.getCache();
+    var configuration = new CaffeineConfiguration<Object, Object>()
+        .setMaximumSize(OptionalLong.of(cache.getMaximumSize()))
+        .setExpireAfterWrite(OptionalLong.of(cache.getTimeToLive().toNanos()))
+        // Hibernate only caches immutable, disassembled entity state, copying it on every access is pointless
+        .setStoreByValue(false)
+        .setStatisticsEnabled(true);
+    cacheManager.createCache(NoteEntity.CACHE_REGION, configuration);
+    return cacheManager;
+  }
+
+  @Bean
+  HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+    return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+  }
+
+  @Bean
+  JCacheMetrics<Object, Object, Cache<Object, Object>> noteCacheMetrics(CacheManager hibernateCacheManager) {
+    return new JCacheMetrics<>(hibernateCacheManager.getCache(NoteEntity.CACHE_REGION), Tags.empty());
+  }
+}
@@ -0,0 +1,19 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables {@link io.micrometer.core.annotation.Timed} on Spring beans. Histograms and percentiles of the timers are
+ * configured in {@code management.metrics.distribution}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfig {
+
+  @Bean
+  TimedAspect timedAspect(MeterRegistry meterRegistry) {
+    return new TimedAspect(meterRegistry);
+  }
+}
@@ -0,0 +1,172 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "notes")
+public class NoteProperties {
+  // number of notes shown per page in the list view
+  private int pageSize = 20;
+
+  // characters of each note loaded for the list view, longer notes are cut off
+  private int previewLength = 280;
+
+  // notes written per flush in NoteService.upsertAll, a multiple of hibernate.jdbc.batch_size
+  private int upsertChunkSize = 500;
+
+  // notes changed per statement by the bulk operations of NoteService, each chunk commits on its own so rows stay
+  // locked only briefly
+  private int bulkChunkSize = 1000;
+
+  private final Cache cache = new Cache();
+
+  private final DtoCache dtoCache = new DtoCache();
+
+  private final FragmentSearch fragmentSearch = new FragmentSearch();
+
+  private final VirtualThreads virtualThreads = new VirtualThreads();
+
+  private final Replica replica = new Replica();
+
+  private final WriteBehind writeBehind = new WriteBehind();
+
+  private final ChangeFeed changeFeed = new ChangeFeed();
+
+  private final Outbox outbox = new Outbox();
+
+  private final Partitions partitions = new Partitions();
+
+  private final Archive archive = new Archive();
+
+  private final Purge purge = new Purge();
+
+  @Data
+  public static class Cache {
+    // maximum number of notes kept in the Hibernate second-level cache
+    private long maximumSize = 10_000;
+
+    // how long a cached note is served before it is reloaded, bounds staleness after writes that bypass Hibernate
+    private Duration timeToLive = Duration.ofMinutes(10);
+  }
+
+  @Data
+  public static class DtoCache {
+    // bound of the Note DTO cache in NoteService, an entry weighs its text length plus a small fixed overhead
+    private long maximumWeight = 32 * 1024 * 1024;
+
+    // entries older than this are reloaded in the background on their next read, which is still served from the cache
+    private Duration refreshAfterWrite = Duration.ofSeconds(30);
+
+    // entries older than this are dropped, so notes nobody reads are not refreshed forever
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+  }
+
+  @Data
+  public static class FragmentSearch {
+    // most notes returned by a substring or similarity search, there is no paging beyond them
+    private int maxResults = 50;
+
+    // searches running longer are cancelled by PostgreSQL, so a pathological pattern cannot hold on to a connection
+    private Duration statementTimeout = Duration.ofSeconds(2);
+  }
+
+  @Data
+  public static class VirtualThreads {
+    // virtual threads blocking longer than this while pinned to their carrier are logged
+    private Duration pinnedThreshold = Duration.ofMillis(20);
+  }
+
+  @Data
+  public static class Replica {
+    // JDBC URL of a read replica, read-only transactions are routed to it if set (see ReplicaRoutingConfig)
+    private String url;
+
+    // credentials for the replica, default to the ones of spring.datasource
+    private String username;
+    private String password;
+
+    // after a write through NoteService, all reads stay on the primary this long so it is read back, zero to disable
+    private Duration readYourWritesWindow = Duration.ofSeconds(2);
+
+    // reads go to the primary while the replica lags further behind or has not been reached for three checks
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+  }
+
+  @Data
+  public static class WriteBehind {
+    // buffer edits of existing notes and write them in batches, see NoteWriteBehindBuffer
+    private boolean enabled = false;
+
+    // buffered edits are written at least this often
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    // number of buffered notes that triggers a flush before the interval is over
+    private int maxBuffered = 1000;
+
+    // edits that could not be written on shutdown are saved to this file and buffered again on the next start
+    private String spillFile = "note-write-behind.ndjson";
+  }
+
+  @Data
+  public static class ChangeFeed {
+    // changes waiting to be sent per subscriber of /notes/stream, a subscriber falling further behind is told to reload
+    private int bufferSize = 100;
+
+    // idle streams get a comment this often, so proxies keep them open and gone clients are noticed
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+    // wait before listening again after the listener connection was lost
+    private Duration reconnectDelay = Duration.ofSeconds(5);
+  }
+
+  @Data
+  public static class Outbox {
+    // appends relayed note events to this file as NDJSON if set, see NdjsonFileNoteEventSink, else they are logged
+    private String file;
+
+    // how often the relay looks for new events when the outbox was drained
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+    // events claimed and published per transaction
+    private int batchSize = 500;
+  }
+
+  @Data
+  public static class Partitions {
+    // monthly partitions of notes created beyond the current month, inserts fail once they run out
+    private int monthsAhead = 3;
+
+    // how often NotePartitionMaintainer checks for missing partitions
+    private Duration checkInterval = Duration.ofHours(12);
+  }
+
+  @Data
+  public static class Archive {
+    // notes not updated for this long are moved to the archive if set, see NoteArchiver
+    private Duration after;
+
+    // how often the archiver looks for notes due
+    private Duration interval = Duration.ofMinutes(10);
+
+    // notes moved per transaction
+    private int batchSize = 1000;
+  }
+
+  @Data
+  public static class Purge {
+    // deleted notes are kept this long before NotePurger removes them, e.g. to be recovered by hand
+    private Duration after = Duration.ofHours(1);
+
+    // how often the purger looks for deleted notes due
+    private Duration interval = Duration.ofMinutes(1);
+
+    // notes removed per transaction, with a pause between the batches to leave room for autovacuum and other writes
+    private int batchSize = 500;
+    private Duration pause = Duration.ofMillis(100);
+  }
+}
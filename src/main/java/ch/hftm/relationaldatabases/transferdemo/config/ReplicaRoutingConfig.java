@@ -0,0 +1,94 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ConnectionLimitingDataSource;
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ReadWriteRoutingDataSource;
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ReadYourWritesAspect;
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes read-only transactions, e.g. {@code @Transactional(readOnly = true)} service methods and the reading
+ * repository methods, to a read replica, active if {@code notes.replica.url} is set (see the {@code replica} profile).
+ * Primary and replica get a Hikari pool each, configured by {@code spring.datasource.hikari}. The data source used by
+ * JPA, Flyway and JDBC picks one of them per transaction, see {@link ReadWriteRoutingDataSource}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "notes.replica", name = "url")
+public class ReplicaRoutingConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    dataSource.setPoolName("primary");
+    return dataSource;
+  }
+
+  // bound to the same pool settings as the primary, @ConfigurationProperties can only be declared once per prefix
+  @Bean
+  HikariDataSource replicaDataSource(DataSourceProperties properties, NoteProperties noteProperties,
+      Environment environment) {
+    var replica = noteProperties.getReplica();
+    var dataSource = properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .url(replica.getUrl())
+        .username(replica.getUsername() != null ? replica.getUsername() : properties.determineUsername())
+        .password(replica.getPassword() != null ? replica.getPassword() : properties.determinePassword())
+        .build();
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+    dataSource.setPoolName("replica");
+    dataSource.setReadOnly(true);
+    return dataSource;
+  }
+
+  @Bean
+  ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica, NoteProperties properties) {
+    return new ReplicaLagMonitor(replica, properties.getReplica().getMaxLag(),
+        properties.getReplica().getLagCheckInterval());
+  }
+
+  // The transaction managers fetch the connection when a transaction begins, before its read-only flag is set. The
+  // lazy proxy defers that until the first statement, when the routing data source can see the flag. On virtual
+  // threads only the primary is limited (see VirtualThreadsConfig), the replica is not where writes queue up.
+  @Bean
+  @Primary
+  DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primary,
+      @Qualifier("replicaDataSource") DataSource replica, ReplicaLagMonitor lagMonitor, NoteProperties properties,
+      Environment environment) {
+    DataSource writer = Threading.VIRTUAL.isActive(environment) ? ConnectionLimitingDataSource.forPool(primary) : primary;
+    var routing = new ReadWriteRoutingDataSource(writer, replica, properties.getReplica().getReadYourWritesWindow(),
+        lagMonitor::isReplicaUsable);
+    routing.afterPropertiesSet();
+    return new LazyConnectionDataSourceProxy(routing);
+  }
+
+  @Bean
+  ReadYourWritesAspect readYourWritesAspect() {
+    return new ReadYourWritesAspect();
+  }
+
+  @Bean
+  MeterBinder replicaLagMetrics(ReplicaLagMonitor lagMonitor) {
+    return registry -> Gauge.builder("jdbc.replica.lag", lagMonitor,
+            monitor -> monitor.getLag().map(lag -> lag.toNanos() / 1e9).orElse(Double.NaN))
+        .description("Seconds the read replica is behind the primary, NaN if it could not be reached")
+        .baseUnit("seconds")
+        .register(registry);
+  }
+}
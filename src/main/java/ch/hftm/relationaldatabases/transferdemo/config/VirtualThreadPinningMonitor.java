@@ -0,0 +1,65 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+
+/**
+ * Watches the JFR {@code jdk.VirtualThreadPinned} event, which the JVM records when a virtual thread blocks while it
+ * cannot unmount from its carrier, e.g. inside a {@code synchronized} block of a driver. Such a thread occupies one of
+ * the few carrier threads for the whole time. Pinned sections are logged with their stack trace and counted as
+ * {@code jvm.threads.virtual.pinned}.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+  private static final int MAX_LOGGED_FRAMES = 64;
+
+  private final Duration threshold;
+  private final Counter pinned;
+  private RecordingStream stream;
+
+  public VirtualThreadPinningMonitor(MeterRegistry meterRegistry, Duration threshold) {
+    this.threshold = threshold;
+    this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+        .description("Virtual threads that blocked while pinned to their carrier thread")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public synchronized void start() {
+    stream = new RecordingStream();
+    stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+    stream.onEvent(PINNED_EVENT, this::onPinned);
+    stream.startAsync();
+  }
+
+  @Override
+  public synchronized void stop() {
+    stream.close();
+    stream = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return stream != null;
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinned.increment();
+
+    var message = new StringBuilder("Virtual thread pinned for ").append(event.getDuration().toMillis()).append("ms");
+    if (event.getStackTrace() != null) {
+      event.getStackTrace().getFrames().stream().limit(MAX_LOGGED_FRAMES).forEach(frame -> message
+          .append("\n\tat ").append(frame.getMethod().getType().getName())
+          .append('.').append(frame.getMethod().getName())
+          .append(':').append(frame.getLineNumber()));
+    }
+    log.warn(message.toString());
+  }
+}
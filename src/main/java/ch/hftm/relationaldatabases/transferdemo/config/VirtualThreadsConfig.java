@@ -0,0 +1,70 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ConnectionLimitingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Additions for running on virtual threads, active with {@code spring.threads.virtual.enabled=true} (see the
+ * {@code virtual-threads} profile). Tomcat then handles every request, and thereby every {@code NoteService} call, on
+ * its own virtual thread, so requests are no longer limited by the size of a thread pool. The connection pool becomes
+ * the limit instead, which is why it is guarded by a {@link ConnectionLimitingDataSource}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+  // Without a replica this takes the place of the auto-configured pool: the pool stays a HikariDataSource bean of its
+  // own, only the data source used by JPA, Flyway and JDBC is wrapped. With a replica, see ReplicaRoutingConfig.
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnExpression("'${notes.replica.url:}'.isEmpty()")
+  static class PrimaryOnly {
+
+    // bound like the replica pool, @ConfigurationProperties can only be declared once per prefix
+    @Bean
+    HikariDataSource primaryDataSource(DataSourceProperties properties, Environment environment) {
+      var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+      Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+      return dataSource;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primary) {
+      return ConnectionLimitingDataSource.forPool(primary);
+    }
+  }
+
+  @Bean
+  MeterBinder connectionLimiterMetrics(DataSource dataSource) {
+    return registry -> {
+      if (dataSource instanceof ConnectionLimitingDataSource limiter) {
+        Gauge.builder("jdbc.connections.limiter.waiting", limiter, ConnectionLimitingDataSource::getWaitingThreads)
+            .description("Threads waiting for a connection permit")
+            .register(registry);
+        Gauge.builder("jdbc.connections.limiter.available", limiter, ConnectionLimitingDataSource::getAvailablePermits)
+            .description("Connection permits currently available")
+            .register(registry);
+      }
+    };
+  }
+
+  @Bean
+  VirtualThreadPinningMonitor virtualThreadPinningMonitor(MeterRegistry meterRegistry, NoteProperties properties) {
+    return new VirtualThreadPinningMonitor(meterRegistry, properties.getVirtualThreads().getPinnedThreshold());
+  }
+}
@@ -1,5 +1,6 @@
 package ch.hftm.relationaldatabases.transferdemo.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Value;
 
@@ -13,4 +14,8 @@ public class Note {
   String note;
   Instant createdAt;
   Instant updatedAt;
+  // version the note was read at, null to write without checking for concurrent changes; a concurrency token of this
+  // database and not part of exported notes
+  @JsonIgnore
+  Long version;
 }
@@ -0,0 +1,22 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Selects notes for bulk operations, a note has to match every criterion that is set.
+ */
+@Builder
+@Value
+public class NoteCriteria {
+  Instant createdBefore;
+  Instant updatedBefore;
+  // matched literally and ignoring case, like NoteService.findContaining
+  String containing;
+
+  public boolean isEmpty() {
+    return createdBefore == null && updatedBefore == null && containing == null;
+  }
+}
@@ -0,0 +1,41 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of a note in the list ordered by (createdAt, uuid). Used for keyset pagination, encoded as an opaque
+ * URL-safe token.
+ */
+@Value
+public class NoteCursor {
+  Instant createdAt;
+  UUID uuid;
+
+  public static NoteCursor of(Note note) {
+    return new NoteCursor(note.getCreatedAt(), note.getUuid());
+  }
+
+  public static NoteCursor of(NotePreview note) {
+    return new NoteCursor(note.getCreatedAt(), note.getUuid());
+  }
+
+  public static NoteCursor decode(String token) {
+    try {
+      var decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var parts = decoded.split("\\|", 2);
+      return new NoteCursor(Instant.parse(parts[0]), UUID.fromString(parts[1]));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + token, e);
+    }
+  }
+
+  public String encode() {
+    var raw = createdAt + "|" + uuid;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,22 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Builder
+@Value
+public class NoteEvent {
+  // outbox row id, unique per event, consumers can use it to skip events delivered twice
+  long id;
+  UUID uuid;
+  // note.created, note.updated or note.deleted
+  String type;
+  // the note as JSON, only uuid and version for deleted notes
+  @JsonRawValue
+  String payload;
+  Instant createdAt;
+}
@@ -12,4 +12,5 @@ import java.util.UUID;
 public class NoteForm {
   private UUID uuid;
   private String note;
+  private Long version;
 }
@@ -0,0 +1,13 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Builder
+@Value
+public class NoteImportResult {
+  // rows read from the upload
+  long received;
+  long inserted;
+  long updated;
+}
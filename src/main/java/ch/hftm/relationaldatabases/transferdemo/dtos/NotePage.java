@@ -0,0 +1,23 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Builder
+@Value
+public class NotePage {
+  List<NotePreview> notes;
+  // encoded cursors, null if there is no page in that direction
+  String nextCursor;
+  String previousCursor;
+
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+
+  public boolean hasPrevious() {
+    return previousCursor != null;
+  }
+}
@@ -0,0 +1,21 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A note as shown in list views: only the beginning of the text is loaded from the database.
+ */
+@Builder
+@Value
+public class NotePreview {
+  UUID uuid;
+  String preview;
+  // whether the note is longer than the preview
+  boolean truncated;
+  Instant createdAt;
+  Instant updatedAt;
+}
@@ -0,0 +1,32 @@
+package ch.hftm.relationaldatabases.transferdemo.dtos;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of a hit in the search results ordered by (rank, uuid), encoded as an opaque URL-safe token. The rank is
+ * PostgreSQL's {@code real}, which a float represents exactly.
+ */
+@Value
+public class NoteSearchCursor {
+  float rank;
+  UUID uuid;
+
+  public static NoteSearchCursor decode(String token) {
+    try {
+      var decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var parts = decoded.split("\\|", 2);
+      return new NoteSearchCursor(Float.parseFloat(parts[0]), UUID.fromString(parts[1]));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + token, e);
+    }
+  }
+
+  public String encode() {
+    var raw = rank + "|" + uuid;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+}
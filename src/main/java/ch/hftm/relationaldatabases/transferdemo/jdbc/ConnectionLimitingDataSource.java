@@ -0,0 +1,137 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets at most a fixed number of connections be checked out of the target pool at once. Callers beyond that wait on a
+ * fair semaphore, so thousands of virtual threads queue up in order here instead of all contending inside the pool.
+ * The permit is released when the connection is closed, i.e. returned to the pool.
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+  // HikariCP applies its default pool size only when the pool starts, until then the size reads as unset
+  private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+  private final Semaphore permits;
+  private final Duration timeout;
+
+  public ConnectionLimitingDataSource(DataSource targetDataSource, int maxConnections, Duration timeout) {
+    super(targetDataSource);
+    this.permits = new Semaphore(maxConnections, true);
+    this.timeout = timeout;
+  }
+
+  /**
+   * Limits the connections of the pool to its size, waiting at most its connection timeout in total.
+   */
+  public static ConnectionLimitingDataSource forPool(HikariDataSource pool) {
+    var poolSize = pool.getMaximumPoolSize() > 0 ? pool.getMaximumPoolSize() : HIKARI_DEFAULT_POOL_SIZE;
+    return new ConnectionLimitingDataSource(pool, poolSize, Duration.ofMillis(pool.getConnectionTimeout()));
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return limit(this::getTargetConnection);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return limit(remaining -> obtainTargetDataSource().getConnection(username, password));
+  }
+
+  public int getAvailablePermits() {
+    return permits.availablePermits();
+  }
+
+  public int getWaitingThreads() {
+    return permits.getQueueLength();
+  }
+
+  private Connection limit(ConnectionSupplier supplier) throws SQLException {
+    var deadline = System.nanoTime() + timeout.toNanos();
+    try {
+      if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+        throw new SQLTransientConnectionException("No connection available within " + timeout.toMillis() + "ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+    }
+
+    try {
+      var connection = supplier.get(Duration.ofNanos(deadline - System.nanoTime()));
+      return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+          new Class<?>[]{ConnectionProxy.class}, new PermitReleasingHandler(connection));
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  // a started Hikari pool only gets the rest of the timeout, so the waits here and in the pool do not add up
+  private Connection getTargetConnection(Duration remaining) throws SQLException {
+    if (obtainTargetDataSource() instanceof HikariDataSource hikari
+        && hikari.getHikariPoolMXBean() instanceof HikariPool pool) {
+      return pool.getConnection(Math.max(remaining.toMillis(), 1));
+    }
+    return obtainTargetDataSource().getConnection();
+  }
+
+  @FunctionalInterface
+  private interface ConnectionSupplier {
+    Connection get(Duration remaining) throws SQLException;
+  }
+
+  private class PermitReleasingHandler implements InvocationHandler {
+    private final Connection target;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    PermitReleasingHandler(Connection target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "getTargetConnection":
+          return target;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "close":
+          // close may be called more than once, the permit must only be returned once
+          if (!released.compareAndSet(false, true)) {
+            return null;
+          }
+          try {
+            target.close();
+          } finally {
+            permits.release();
+          }
+          return null;
+        default:
+          try {
+            return method.invoke(target, args);
+          } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+          }
+      }
+    }
+  }
+}
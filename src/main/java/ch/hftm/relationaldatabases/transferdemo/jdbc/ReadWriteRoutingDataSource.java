@@ -0,0 +1,84 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends connections of read-only transactions to a replica and everything else to the primary. The decision is made
+ * when the connection is fetched, so this has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: transaction managers fetch the connection
+ * before the transaction's read-only flag is set.
+ * <p>
+ * Reads stay on the primary while the replica is not usable, e.g. lagging too far behind, and for a window after every
+ * write made within a {@link ReadYourWrites} method, so changes are read back right after they are made. Writes of
+ * background jobs open no window. The window applies to all reads of this instance, not only to the writer's: the
+ * caches in front of the database are shared, and a reload from a replica that has not yet caught up would keep
+ * serving the old row to everyone.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+  public enum Target { PRIMARY, REPLICA }
+
+  // set by ReadYourWritesAspect while a @ReadYourWrites method runs
+  static final ThreadLocal<Boolean> READ_YOUR_WRITES = ThreadLocal.withInitial(() -> false);
+
+  private final long readYourWritesWindow;
+  private final BooleanSupplier replicaUsable;
+
+  // System.nanoTime() until which reads go to the primary
+  private final AtomicLong primaryUntil = new AtomicLong(System.nanoTime());
+
+  public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow,
+      BooleanSupplier replicaUsable) {
+    this.readYourWritesWindow = readYourWritesWindow.toNanos();
+    this.replicaUsable = replicaUsable;
+    setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false);
+  }
+
+  @Override
+  protected Target determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      if (TransactionSynchronizationManager.isActualTransactionActive() && READ_YOUR_WRITES.get()) {
+        startReadYourWritesWindow();
+      }
+      return Target.PRIMARY;
+    }
+
+    if (System.nanoTime() - primaryUntil.get() < 0 || !replicaUsable.getAsBoolean()) {
+      return Target.PRIMARY;
+    }
+    return Target.REPLICA;
+  }
+
+  // started when the writing transaction begins and again once it committed, so the window covers long transactions;
+  // the highest precedence restarts it before other callbacks, e.g. cache evictions, let readers reload the rows
+  private void startReadYourWritesWindow() {
+    extendPrimaryUntil(System.nanoTime() + readYourWritesWindow);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public int getOrder() {
+          return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCommit() {
+          extendPrimaryUntil(System.nanoTime() + readYourWritesWindow);
+        }
+      });
+    }
+  }
+
+  private void extendPrimaryUntil(long deadline) {
+    primaryUntil.accumulateAndGet(deadline, (current, next) -> next - current > 0 ? next : current);
+  }
+}
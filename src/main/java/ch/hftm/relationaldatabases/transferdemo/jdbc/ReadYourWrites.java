@@ -0,0 +1,15 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method whose writes have to be read back, reads after them stay on the primary for the read-your-writes
+ * window of {@link ReadWriteRoutingDataSource}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadYourWrites {
+}
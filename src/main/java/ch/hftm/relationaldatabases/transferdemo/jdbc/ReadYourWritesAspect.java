@@ -0,0 +1,29 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Applies {@link ReadYourWrites} to the transactions started while the annotated method runs.
+ */
+// outside of @Transactional, the marker has to be set when the transaction fetches its connection
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReadYourWritesAspect {
+
+  @Around("@annotation(ch.hftm.relationaldatabases.transferdemo.jdbc.ReadYourWrites)")
+  public Object readYourWrites(ProceedingJoinPoint joinPoint) throws Throwable {
+    if (ReadWriteRoutingDataSource.READ_YOUR_WRITES.get()) {
+      return joinPoint.proceed();
+    }
+    ReadWriteRoutingDataSource.READ_YOUR_WRITES.set(true);
+    try {
+      return joinPoint.proceed();
+    } finally {
+      ReadWriteRoutingDataSource.READ_YOUR_WRITES.remove();
+    }
+  }
+}
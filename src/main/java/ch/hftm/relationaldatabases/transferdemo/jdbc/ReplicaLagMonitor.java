@@ -0,0 +1,88 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically measures how far a PostgreSQL streaming replica is behind its primary. The replica counts as usable
+ * while the last successful measurement is recent and within the allowed lag, so an unreachable replica is given up
+ * after a few missed checks instead of waiting for its connection timeouts.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements SmartLifecycle {
+  // no lag if the replica is not in recovery (i.e. no standby) or has replayed everything it received, otherwise the
+  // age of the last replayed transaction
+  private static final String LAG_SECONDS = """
+      SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                  ELSE extract(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END""";
+
+  private static final int MISSED_CHECKS = 3;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final Duration maxLag;
+  private final Duration checkInterval;
+  private ScheduledExecutorService scheduler;
+
+  private volatile Measurement last;
+
+  public ReplicaLagMonitor(DataSource replica, Duration maxLag, Duration checkInterval) {
+    this.jdbcTemplate = new JdbcTemplate(replica);
+    this.jdbcTemplate.setQueryTimeout((int) Math.max(1, checkInterval.toSeconds()));
+    this.maxLag = maxLag;
+    this.checkInterval = checkInterval;
+  }
+
+  @Override
+  public synchronized void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("replica-lag").factory());
+    scheduler.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    scheduler.shutdownNow();
+    scheduler = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return scheduler != null;
+  }
+
+  /**
+   * Returns the lag of the last measurement, empty if the replica has not been reached recently.
+   */
+  public Optional<Duration> getLag() {
+    var measurement = last;
+    if (measurement == null || System.nanoTime() - measurement.measuredAt() > checkInterval.toNanos() * MISSED_CHECKS) {
+      return Optional.empty();
+    }
+    return Optional.of(measurement.lag());
+  }
+
+  public boolean isReplicaUsable() {
+    return getLag().filter(lag -> lag.compareTo(maxLag) <= 0).isPresent();
+  }
+
+  void check() {
+    try {
+      var seconds = jdbcTemplate.queryForObject(LAG_SECONDS, Double.class);
+      // null if the replica has not replayed any transaction yet, i.e. the lag is unknown
+      last = seconds != null ? new Measurement(Duration.ofNanos((long) (seconds * 1e9)), System.nanoTime()) : null;
+    } catch (DataAccessException e) {
+      log.warn("Could not measure replica lag: {}", e.getMessage());
+    }
+  }
+
+  private record Measurement(Duration lag, long measuredAt) {
+  }
+}
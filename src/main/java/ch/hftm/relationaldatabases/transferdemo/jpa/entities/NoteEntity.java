@@ -1,8 +1,14 @@
 package ch.hftm.relationaldatabases.transferdemo.jpa.entities;
 
+import ch.hftm.relationaldatabases.transferdemo.jpa.generators.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.PartitionKey;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLRestriction;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
@@ -15,20 +21,37 @@ import java.util.UUID;
 @Getter
 @Setter
 @Table(name = "notes")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = NoteEntity.CACHE_REGION)
+// soft delete: removing an entity only marks the row, deleted rows are invisible to every query on the entity and
+// purged later by NotePurger
+// Hibernate binds the id, the version and then the partition key
+@SQLDelete(sql = "UPDATE notes SET deleted_at = statement_timestamp() "
+    + "WHERE uuid = ? AND version = ? AND created_at = ?")
+@SQLRestriction("deleted_at IS NULL")
 public class NoteEntity {
+  public static final String CACHE_REGION = "notes";
+
   @Id
-  @GeneratedValue(strategy = GenerationType.UUID)
+  @GeneratedUuidV7
   @Column(name = "uuid", updatable = false, nullable = false)
   private UUID uuid;
 
   @Column(name = "note", nullable = false)
   private String note;
 
+  // also bounds updates and deletes of the entity, so PostgreSQL only touches the note's partition
   @Column(name = "created_at", nullable = false)
   @CreationTimestamp
+  @PartitionKey
   protected Instant createdAt;
 
   @Column(name = "updated_at", nullable = false)
   @UpdateTimestamp
   protected Instant updatedAt;
+
+  // incremented by Hibernate on every update, which then only applies if the row still has the version read before
+  @Version
+  @Column(name = "version", nullable = false)
+  private Long version;
 }
\ No newline at end of file
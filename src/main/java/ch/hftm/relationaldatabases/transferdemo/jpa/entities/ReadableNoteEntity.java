@@ -0,0 +1,35 @@
+package ch.hftm.relationaldatabases.transferdemo.jpa.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A note of either tier as read by lists, searches and exports, see the readable_notes view (V1.11). Writes go
+// through NoteEntity and NoteArchiver.
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Getter
+@Immutable
+@Table(name = "readable_notes")
+public class ReadableNoteEntity {
+  @Id
+  @Column(name = "uuid")
+  private UUID uuid;
+
+  @Column(name = "note")
+  private String note;
+
+  @Column(name = "created_at")
+  private Instant createdAt;
+
+  @Column(name = "updated_at")
+  private Instant updatedAt;
+
+  @Column(name = "version")
+  private Long version;
+}
@@ -0,0 +1,56 @@
+package ch.hftm.relationaldatabases.transferdemo.jpa.generators;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates time-ordered RFC 9562 version 7 UUIDs.
+ * <p>
+ * The 48 bit millisecond timestamp is followed by a 12 bit counter (method 1 of RFC 9562, section 6.2), so values
+ * created by this JVM are strictly increasing, even within the same millisecond or if the clock goes backwards.
+ */
+public final class UuidV7 {
+  private static final int COUNTER_BITS = 12;
+  private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+  private static final long VERSION = 0x7L << COUNTER_BITS;
+  private static final long VARIANT = 0x8000_0000_0000_0000L;
+  private static final long RANDOM_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+  // unix_ts_ms << 12 | counter of the last value handed out
+  private static final AtomicLong LAST = new AtomicLong();
+
+  private UuidV7() {
+  }
+
+  public static UUID randomUuid() {
+    var state = nextState(System.currentTimeMillis());
+    var mostSigBits = (state >>> COUNTER_BITS) << 16 | VERSION | (state & COUNTER_MASK);
+    // rand_b only has to keep values from different JVMs apart, ordering comes from timestamp and counter
+    var leastSigBits = VARIANT | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+    return new UUID(mostSigBits, leastSigBits);
+  }
+
+  /**
+   * Returns the unix timestamp in milliseconds stored in the given version 7 UUID.
+   */
+  public static long timestamp(UUID uuid) {
+    if (uuid.version() != 7) {
+      throw new IllegalArgumentException("Not a version 7 UUID: " + uuid);
+    }
+    return uuid.getMostSignificantBits() >>> 16;
+  }
+
+  // A new millisecond restarts the counter, otherwise it is incremented. An overflowing counter carries into the
+  // timestamp, which then runs slightly ahead of the clock until the clock catches up.
+  static long nextState(long currentTimeMillis) {
+    var candidate = currentTimeMillis << COUNTER_BITS;
+    while (true) {
+      var last = LAST.get();
+      var next = Math.max(candidate, last + 1);
+      if (LAST.compareAndSet(last, next)) {
+        return next;
+      }
+    }
+  }
+}
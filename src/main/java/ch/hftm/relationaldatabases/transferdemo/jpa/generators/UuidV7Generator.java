@@ -0,0 +1,27 @@
+package ch.hftm.relationaldatabases.transferdemo.jpa.generators;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.EventType;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Hibernate identifier generator assigning {@link UuidV7} values, see {@link GeneratedUuidV7}.
+ */
+public class UuidV7Generator implements IdentifierGenerator {
+  @Override
+  public Object generate(SharedSessionContractImplementor session, Object object) {
+    return UuidV7.randomUuid();
+  }
+
+  // Entities may bring their own uuid, e.g. when a client upserts a note it already knows the uuid of
+  @Override
+  public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+      EventType eventType) {
+    return currentValue != null ? currentValue : generate(session, owner);
+  }
+
+  @Override
+  public boolean allowAssignedIdentifiers() {
+    return true;
+  }
+}
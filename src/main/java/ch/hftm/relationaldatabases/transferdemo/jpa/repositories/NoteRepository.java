@@ -1,15 +1,232 @@
 package ch.hftm.relationaldatabases.transferdemo.jpa.repositories;
 
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
 import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.ReadableNoteEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 @Repository
 public interface NoteRepository extends JpaRepository<NoteEntity, UUID> {
-  @Query("SELECT n FROM NoteEntity n")
-  Stream<NoteEntity> streamAllNotes();
+  // List views only show the beginning of each note, left() keeps long texts in the database. Like the query below,
+  // the previews are built by a constructor expression, so no entities are managed, snapshotted or mapped. Reads of
+  // many notes go to ReadableNoteEntity, which includes the archived ones.
+  String SELECT_PREVIEW = """
+      SELECT new ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview(
+          n.uuid, left(n.note, :previewLength), length(n.note) > :previewLength, n.createdAt, n.updatedAt)
+      FROM ReadableNoteEntity n
+      """;
+
+  @Query("SELECT new ch.hftm.relationaldatabases.transferdemo.dtos.Note(n.uuid, n.note, n.createdAt, n.updatedAt, "
+      + "n.version) "
+      + "FROM ReadableNoteEntity n")
+  List<Note> findAllNotes();
+
+  // the fetch size makes the PostgreSQL driver use a server-side cursor (inside a transaction) instead of buffering
+  // the whole result set, read-only skips the dirty-checking snapshots
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("SELECT n FROM ReadableNoteEntity n")
+  Stream<ReadableNoteEntity> streamAllNotes();
+
+  // Point lookups by uuid look up the partition key in note_ids first (see V1.12). It is only known when the
+  // statement runs, PostgreSQL then prunes the other partitions instead of probing the primary key of each of them.
+  @Query(value = """
+      SELECT * FROM notes
+      WHERE uuid = :uuid AND deleted_at IS NULL
+        AND created_at = (SELECT i.created_at FROM note_ids i WHERE i.uuid = :uuid)""", nativeQuery = true)
+  Optional<NoteEntity> findInPartitionById(UUID uuid);
+
+  // insert or update in one round trip; mirrors @CreationTimestamp/@UpdateTimestamp/@Version: created_at is only set
+  // on insert, updated_at and version only change if the text actually changed. MERGE instead of ON CONFLICT, the
+  // partitioned table has no unique index on uuid alone to conflict on (see V1.8); inserting a uuid concurrently
+  // inserted by another transaction fails on note_ids instead of updating. Returns null for an archived note, which
+  // has to be restored first (see NoteArchiver). A deleted note is recreated, with a new created_at like an inserted
+  // one, but its version continues so edits of the deleted note still fail.
+  @Transactional
+  @Query(value = """
+      MERGE INTO notes n
+      USING (SELECT CAST(:uuid AS uuid) AS uuid, CAST(:note AS text) AS note
+             WHERE NOT EXISTS (SELECT FROM notes_archive a WHERE a.uuid = :uuid)) s ON n.uuid = s.uuid
+      WHEN MATCHED AND n.deleted_at IS NOT NULL THEN UPDATE
+      SET note = s.note, created_at = statement_timestamp(), updated_at = statement_timestamp(),
+          version = n.version + 1, deleted_at = NULL
+      WHEN MATCHED THEN UPDATE
+      SET note = s.note,
+          updated_at = CASE WHEN n.note IS DISTINCT FROM s.note THEN statement_timestamp() ELSE n.updated_at END,
+          version = CASE WHEN n.note IS DISTINCT FROM s.note THEN n.version + 1 ELSE n.version END
+      WHEN NOT MATCHED THEN
+        INSERT (uuid, note, created_at, updated_at, version)
+        VALUES (s.uuid, s.note, statement_timestamp(), statement_timestamp(), 0)
+      RETURNING n.*""", nativeQuery = true)
+  NoteEntity upsert(UUID uuid, String note);
+
+  // Optimistic update: only applies if the note still has the version it was read at, returns null if it was changed,
+  // deleted or archived since. The check happens in the UPDATE itself, no lock is held between reading and writing.
+  @Transactional
+  @Query(value = """
+      UPDATE notes
+      SET note = :note,
+          updated_at = CASE WHEN note IS DISTINCT FROM :note THEN statement_timestamp() ELSE updated_at END,
+          version = CASE WHEN note IS DISTINCT FROM :note THEN version + 1 ELSE version END
+      WHERE uuid = :uuid AND version = :version AND deleted_at IS NULL
+        AND created_at = (SELECT i.created_at FROM note_ids i WHERE i.uuid = :uuid)
+      RETURNING *""", nativeQuery = true)
+  NoteEntity updateAtVersion(UUID uuid, String note, long version);
+
+  // one statement instead of loading the entity to remove it, returns 0 if there is no such note (any more)
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE notes SET deleted_at = statement_timestamp()
+      WHERE uuid = :uuid AND deleted_at IS NULL
+        AND created_at = (SELECT i.created_at FROM note_ids i WHERE i.uuid = :uuid)""", nativeQuery = true)
+  int softDeleteById(UUID uuid);
+
+  // removes deleted notes right away instead of waiting for NotePurger, e.g. before inserting them again
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM notes WHERE uuid IN (:uuids) AND deleted_at IS NOT NULL", nativeQuery = true)
+  int purgeDeleted(Collection<UUID> uuids);
+
+  // Deletes all notes matching every given criterion in one statement, null criteria match any note. The pattern is
+  // matched like in findContaining.
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE notes SET deleted_at = statement_timestamp()
+      WHERE deleted_at IS NULL
+        AND (CAST(:createdBefore AS timestamp) IS NULL OR created_at < CAST(:createdBefore AS timestamp))
+        AND (CAST(:updatedBefore AS timestamp) IS NULL OR updated_at < CAST(:updatedBefore AS timestamp))
+        AND (CAST(:pattern AS text) IS NULL OR note ILIKE CAST(:pattern AS text) ESCAPE '\\')""",
+      nativeQuery = true)
+  int softDeleteMatching(Instant createdBefore, Instant updatedBefore, String pattern);
+
+  // the uuids are bound as one array parameter, so the statement stays the same whatever the number of uuids
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE notes SET deleted_at = statement_timestamp()
+      WHERE uuid = ANY(CAST(:uuids AS uuid[])) AND deleted_at IS NULL""", nativeQuery = true)
+  int softDeleteAllById(UUID[] uuids);
+
+  // Deletes up to limit notes created before the cutoff and returns their uuids. Rows locked by concurrent writes
+  // are waited for rather than skipped, so repeating this until it returns fewer than limit deletes all of them.
+  @Transactional
+  @Query(value = """
+      WITH deleted AS (
+        UPDATE notes SET deleted_at = statement_timestamp()
+        WHERE (uuid, created_at) IN (SELECT uuid, created_at FROM notes
+                                     WHERE created_at < CAST(:cutoff AS timestamp) AND deleted_at IS NULL
+                                     LIMIT :limit FOR UPDATE)
+        RETURNING uuid
+      )
+      SELECT uuid FROM deleted""", nativeQuery = true)
+  List<UUID> softDeleteCreatedBefore(Instant cutoff, int limit);
+
+  // Replaces every occurrence of text in up to limit notes matching the pattern (case-sensitive, \ escaping % and _)
+  // whose uuid follows after, in uuid order. Returns the uuids changed, the last one is where the next chunk starts;
+  // replacing may leave text in the note, e.g. if it is part of the replacement, so this cannot just repeat until
+  // nothing matches.
+  @Transactional
+  @Query(value = """
+      WITH replaced AS (
+        UPDATE notes SET note = replace(note, :text, :replacement), updated_at = statement_timestamp(),
+                         version = version + 1
+        WHERE (uuid, created_at) IN (SELECT uuid, created_at FROM notes
+                                     WHERE note LIKE :pattern ESCAPE '\\' AND deleted_at IS NULL AND uuid > :after
+                                     ORDER BY uuid LIMIT :limit FOR UPDATE)
+        RETURNING uuid
+      )
+      SELECT uuid FROM replaced ORDER BY uuid""", nativeQuery = true)
+  List<UUID> replaceText(String text, String replacement, String pattern, UUID after, int limit);
+
+  // keyset pagination, newest first: the row value comparison lets PostgreSQL seek directly into
+  // notes_created_at_uuid_idx, so every page costs the same regardless of how deep it is. The redundant bound on
+  // createdAt alone is what prunes the partitions beyond the cursor, PostgreSQL does not prune on row comparisons.
+  @Query(SELECT_PREVIEW + "ORDER BY n.createdAt DESC, n.uuid DESC")
+  List<NotePreview> findFirstPage(int previewLength, Limit limit);
+
+  @Query(SELECT_PREVIEW + """
+      WHERE (n.createdAt, n.uuid) < (:createdAt, :uuid) AND n.createdAt <= :createdAt
+      ORDER BY n.createdAt DESC, n.uuid DESC""")
+  List<NotePreview> findPageAfter(Instant createdAt, UUID uuid, int previewLength, Limit limit);
+
+  // returns the notes preceding the cursor in ascending order, closest first
+  @Query(SELECT_PREVIEW + """
+      WHERE (n.createdAt, n.uuid) > (:createdAt, :uuid) AND n.createdAt >= :createdAt
+      ORDER BY n.createdAt ASC, n.uuid ASC""")
+  List<NotePreview> findPageBefore(Instant createdAt, UUID uuid, int previewLength, Limit limit);
+
+  // Full-text search, best matches first. The GIN index on search_vector finds the matching notes, ts_rank orders
+  // them. Keyset pagination on (rank, uuid) continues after the last hit of the previous page. Like the other searches,
+  // it has no bound on created_at and probes the index of every partition, one per month of notes kept, and scans the
+  // archive, which has no search indexes (V1.13).
+  String SEARCH = """
+      SELECT n.uuid AS uuid, left(n.note, :previewLength) AS preview, length(n.note) > :previewLength AS truncated,
+             n.created_at AS createdAt, n.updated_at AS updatedAt, ts_rank(n.search_vector, q) AS rank
+      FROM readable_notes n, websearch_to_tsquery('english', :query) q
+      WHERE n.search_vector @@ q
+      """;
+
+  @Query(value = SEARCH + "ORDER BY rank DESC, uuid DESC LIMIT :limit", nativeQuery = true)
+  List<SearchHit> search(String query, int previewLength, int limit);
+
+  @Query(value = SEARCH + """
+      AND (ts_rank(n.search_vector, q), n.uuid) < (CAST(:rank AS real), :uuid)
+      ORDER BY rank DESC, uuid DESC LIMIT :limit""", nativeQuery = true)
+  List<SearchHit> searchAfter(String query, float rank, UUID uuid, int previewLength, int limit);
+
+  // Substring search, newest first. The pattern is matched case-insensitively, with \ escaping literal % and _.
+  // The trigram index on note narrows the candidates down, so this does not scan the table for patterns of three or
+  // more characters.
+  @Query(SELECT_PREVIEW + """
+      WHERE n.note ILIKE :pattern ESCAPE '\\'
+      ORDER BY n.createdAt DESC, n.uuid DESC""")
+  List<NotePreview> findContaining(String pattern, int previewLength, Limit limit);
+
+  // Fuzzy search for notes containing something close to the text, e.g. a misspelled identifier. <% is backed by the
+  // trigram index and uses pg_trgm.word_similarity_threshold, the hits are ordered by their similarity.
+  @Query(value = """
+      SELECT n.uuid AS uuid, left(n.note, :previewLength) AS preview, length(n.note) > :previewLength AS truncated,
+             n.created_at AS createdAt, n.updated_at AS updatedAt, word_similarity(:text, n.note) AS rank
+      FROM readable_notes n
+      WHERE :text <% n.note
+      ORDER BY rank DESC, uuid DESC LIMIT :limit""", nativeQuery = true)
+  List<SearchHit> findSimilar(String text, int previewLength, int limit);
+
+  // like SET LOCAL, the timeout only applies to the statements of the current transaction
+  @Query(value = "SELECT set_config('statement_timeout', :timeout, true)", nativeQuery = true)
+  String setLocalStatementTimeout(String timeout);
+
+  interface SearchHit {
+    UUID getUuid();
+
+    String getPreview();
+
+    boolean isTruncated();
+
+    Instant getCreatedAt();
+
+    Instant getUpdatedAt();
+
+    float getRank();
+  }
 }
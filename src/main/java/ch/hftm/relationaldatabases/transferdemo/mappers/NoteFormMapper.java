@@ -12,11 +12,13 @@ import org.mapstruct.MappingTarget;
 public interface NoteFormMapper {
   @Mapping(target = "uuid", source = "uuid")
   @Mapping(target = "note", source = "note")
+  @Mapping(target = "version", source = "version")
   NoteForm toForm(Note entity);
 
   @Mapping(target = "uuid", source = "uuid")
   @Mapping(target = "note", source = "note")
   @Mapping(target = "createdAt", ignore = true)
   @Mapping(target = "updatedAt", ignore = true)
+  @Mapping(target = "version", source = "version")
   Note toDto(NoteForm dto);
 }
@@ -1,7 +1,10 @@
 package ch.hftm.relationaldatabases.transferdemo.mappers;
 
 import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
 import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.ReadableNoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
@@ -13,17 +16,34 @@ public interface NoteMapper {
   @Mapping(target = "note", source = "note")
   @Mapping(target = "createdAt", source = "createdAt")
   @Mapping(target = "updatedAt", source = "updatedAt")
+  @Mapping(target = "version", source = "version")
   Note toDto(NoteEntity entity);
 
+  @Mapping(target = "uuid", source = "uuid")
+  @Mapping(target = "note", source = "note")
+  @Mapping(target = "createdAt", source = "createdAt")
+  @Mapping(target = "updatedAt", source = "updatedAt")
+  @Mapping(target = "version", source = "version")
+  Note toDto(ReadableNoteEntity entity);
+
   @Mapping(target = "uuid", source = "uuid")
   @Mapping(target = "note", source = "note")
   @Mapping(target = "createdAt", ignore = true)
   @Mapping(target = "updatedAt", ignore = true)
+  @Mapping(target = "version", ignore = true)
   NoteEntity toEntity(Note dto);
 
   @Mapping(target = "uuid", ignore = true)
   @Mapping(target = "note", source = "note")
   @Mapping(target = "createdAt", ignore = true)
   @Mapping(target = "updatedAt", ignore = true)
+  @Mapping(target = "version", ignore = true)
   void updateEntity(Note dto, @MappingTarget NoteEntity entity);
+
+  @Mapping(target = "uuid", source = "uuid")
+  @Mapping(target = "preview", source = "preview")
+  @Mapping(target = "truncated", source = "truncated")
+  @Mapping(target = "createdAt", source = "createdAt")
+  @Mapping(target = "updatedAt", source = "updatedAt")
+  NotePreview toPreview(NoteRepository.SearchHit hit);
 }
@@ -0,0 +1,20 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Logs relayed note events, the sink of {@link NoteOutboxRelay} when no other is configured.
+ */
+@Slf4j
+class LoggingNoteEventSink implements NoteEventSink {
+
+  @Override
+  public void publish(List<NoteEvent> events) {
+    for (var event : events) {
+      log.info("Note event {}: {} {}", event.getId(), event.getType(), event.getUuid());
+    }
+  }
+}
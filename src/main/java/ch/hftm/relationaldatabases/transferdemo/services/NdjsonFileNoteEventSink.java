@@ -0,0 +1,50 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends relayed note events to {@code notes.outbox.file}, one JSON object per line.
+ */
+@Component
+@ConditionalOnProperty(prefix = "notes.outbox", name = "file")
+public class NdjsonFileNoteEventSink implements NoteEventSink {
+  private final Path file;
+  private final ObjectMapper objectMapper;
+
+  public NdjsonFileNoteEventSink(NoteProperties properties, ObjectMapper objectMapper) {
+    this.file = Path.of(properties.getOutbox().getFile());
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public synchronized void publish(List<NoteEvent> events) {
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND)) {
+      var lines = new ByteArrayOutputStream();
+      for (var event : events) {
+        lines.write(objectMapper.writeValueAsBytes(event));
+        lines.write('\n');
+      }
+      var buffer = ByteBuffer.wrap(lines.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
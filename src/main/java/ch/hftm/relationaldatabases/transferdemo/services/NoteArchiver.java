@@ -0,0 +1,235 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves notes not updated within {@code notes.archive.after} to {@code notes_archive} and back when they are written.
+ */
+@Slf4j
+@Component
+public class NoteArchiver implements SmartLifecycle {
+  // oldest first; skips notes locked by concurrent writes, they were just used anyway
+  private static final String ARCHIVE_BATCH = """
+      WITH archived AS (
+        DELETE FROM notes
+        WHERE (uuid, created_at) IN (SELECT uuid, created_at FROM notes
+                                     WHERE updated_at < localtimestamp - make_interval(secs => ?)
+                                       AND deleted_at IS NULL
+                                     ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED)
+        RETURNING uuid, note, created_at, updated_at, version
+      )
+      INSERT INTO notes_archive (uuid, note, created_at, updated_at, version)
+      SELECT uuid, note, created_at, updated_at, version FROM archived""";
+
+  // the placeholder is a condition on the archived notes to restore
+  private static final String RESTORE = """
+      WITH restored AS (
+        DELETE FROM notes_archive WHERE %s
+        RETURNING uuid, note, created_at, updated_at, version
+      )
+      INSERT INTO notes (uuid, note, created_at, updated_at, version)
+      SELECT uuid, note, created_at, updated_at, version FROM restored""";
+  private static final String RESTORE_BY_UUIDS = RESTORE.formatted("uuid = ANY(?)");
+  // keyset pagination by uuid like NoteRepository.replaceText, returns the restored uuids in order
+  private static final String RESTORE_CONTAINING = RESTORE.formatted("""
+      uuid IN (SELECT uuid FROM notes_archive
+               WHERE strpos(note, ?) > 0 AND uuid > ?
+               ORDER BY uuid LIMIT ? FOR UPDATE)""") + " RETURNING uuid";
+  private static final String RESTORE_FROM_STAGING =
+      RESTORE.formatted("uuid IN (SELECT uuid FROM notes_import WHERE uuid IS NOT NULL)");
+
+  private static final String DELETE_MATCHING = """
+      DELETE FROM notes_archive
+      WHERE (CAST(? AS timestamp) IS NULL OR created_at < ?)
+        AND (CAST(? AS timestamp) IS NULL OR updated_at < ?)
+        AND (CAST(? AS text) IS NULL OR note ILIKE ? ESCAPE '\\')""";
+
+  private static final String DELETE_CREATED_BEFORE = """
+      DELETE FROM notes_archive
+      WHERE uuid IN (SELECT uuid FROM notes_archive WHERE created_at < ? LIMIT ? FOR UPDATE)""";
+
+  // switches the note triggers off or on for the rest of the transaction, see V1.9
+  private static final String SET_TIERING = "SELECT set_config('notes.tiering', ?, true)";
+
+  private static final RowMapper<Note> NOTE_MAPPER = (resultSet, rowNum) -> Note.builder()
+      .uuid(resultSet.getObject("uuid", UUID.class))
+      .note(resultSet.getString("note"))
+      .createdAt(resultSet.getTimestamp("created_at").toInstant())
+      .updatedAt(resultSet.getTimestamp("updated_at").toInstant())
+      .version(resultSet.getLong("version"))
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  // NoteService reads and restores through the archiver, so the archiver looks the service up only after archiving
+  private final ObjectProvider<NoteService> noteService;
+  private final NoteProperties.Archive properties;
+  private final Counter archived;
+  private final Counter restored;
+  private ScheduledExecutorService scheduler;
+
+  public NoteArchiver(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+      ObjectProvider<NoteService> noteService, NoteProperties properties, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.noteService = noteService;
+    this.properties = properties.getArchive();
+    this.archived = Counter.builder("notes.archive.archived")
+        .description("Notes moved to the archive")
+        .register(meterRegistry);
+    this.restored = Counter.builder("notes.archive.restored")
+        .description("Notes moved back from the archive")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return properties.getAfter() != null;
+  }
+
+  @Override
+  public synchronized void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("note-archiver").factory());
+    var interval = properties.getInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(this::archive, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    scheduler.shutdown();
+    scheduler = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return scheduler != null;
+  }
+
+  public Optional<Note> findById(UUID uuid) {
+    return jdbcTemplate.query("SELECT uuid, note, created_at, updated_at, version FROM notes_archive WHERE uuid = ?",
+        NOTE_MAPPER, uuid).stream().findFirst();
+  }
+
+  /**
+   * Moves the notes with the given uuids back from the archive, returns how many were restored.
+   */
+  @Transactional
+  public int restore(Collection<UUID> uuids) {
+    return restore(RESTORE_BY_UUIDS, (Object) uuids.toArray(UUID[]::new));
+  }
+
+  /**
+   * Moves up to limit archived notes containing the text, case-sensitively, with a uuid after the given one back from
+   * the archive, returns their uuids in order.
+   */
+  @Transactional
+  public List<UUID> restoreContaining(String text, UUID after, int limit) {
+    jdbcTemplate.queryForObject(SET_TIERING, String.class, "on");
+    var uuids = jdbcTemplate.queryForList(RESTORE_CONTAINING, UUID.class, text, after, limit);
+    jdbcTemplate.queryForObject(SET_TIERING, String.class, "off");
+    restored.increment(uuids.size());
+    return uuids.stream().sorted().toList();
+  }
+
+  /**
+   * Moves the archived notes named in the staging table of {@link NoteImportService} back from the archive.
+   */
+  @Transactional
+  public int restoreFromStaging() {
+    return restore(RESTORE_FROM_STAGING);
+  }
+
+  private int restore(String sql, Object... args) {
+    jdbcTemplate.queryForObject(SET_TIERING, String.class, "on");
+    var count = jdbcTemplate.update(sql, args);
+    jdbcTemplate.queryForObject(SET_TIERING, String.class, "off");
+    restored.increment(count);
+    return count;
+  }
+
+  /**
+   * Deletes an archived note, returns whether there was one.
+   */
+  @Transactional
+  public boolean delete(UUID uuid) {
+    return jdbcTemplate.update("DELETE FROM notes_archive WHERE uuid = ?", uuid) > 0;
+  }
+
+  /**
+   * Deletes the archived notes matching all non-null criteria in one statement, see
+   * {@link ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository#softDeleteMatching}.
+   */
+  @Transactional
+  public int deleteMatching(Instant createdBefore, Instant updatedBefore, String pattern) {
+    return jdbcTemplate.update(DELETE_MATCHING, timestamp(createdBefore), timestamp(createdBefore),
+        timestamp(updatedBefore), timestamp(updatedBefore), pattern, pattern);
+  }
+
+  /**
+   * Deletes the archived notes with the given uuids in one statement, returns how many there were.
+   */
+  @Transactional
+  public int deleteAll(UUID[] uuids) {
+    return jdbcTemplate.update("DELETE FROM notes_archive WHERE uuid = ANY(?)", (Object) uuids);
+  }
+
+  /**
+   * Deletes up to limit archived notes created before the cutoff, returns how many were deleted.
+   */
+  @Transactional
+  public int deleteCreatedBefore(Instant cutoff, int limit) {
+    return jdbcTemplate.update(DELETE_CREATED_BEFORE, Timestamp.from(cutoff), limit);
+  }
+
+  /**
+   * Archives batches until no more notes are due or archiving fails.
+   */
+  void archive() {
+    try {
+      while (archiveBatch() == properties.getBatchSize()) {
+        // a full batch, there are probably more
+      }
+    } catch (RuntimeException e) {
+      // rolled back, the notes are archived with the next run
+      log.warn("Could not archive notes: {}", e.getMessage());
+    }
+  }
+
+  int archiveBatch() {
+    var count = transactionTemplate.execute(status -> {
+      jdbcTemplate.queryForObject(SET_TIERING, String.class, "on");
+      return jdbcTemplate.update(ARCHIVE_BATCH, properties.getAfter().toSeconds(), properties.getBatchSize());
+    });
+    archived.increment(count);
+    if (count > 0) {
+      // the moved notes leave the cached pages and the list version
+      noteService.getObject().evictAllFromCache();
+    }
+    return count;
+  }
+
+  private static Timestamp timestamp(Instant instant) {
+    return instant != null ? Timestamp.from(instant) : null;
+  }
+}
@@ -0,0 +1,193 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends the changes published on the {@code note_changes} channel to the Server-Sent Events subscribers of
+ * {@code /notes/stream}.
+ */
+@Slf4j
+@Component
+public class NoteChangeFeed implements SmartLifecycle {
+  static final String CHANNEL = "note_changes";
+  static final String RELOAD = "{\"op\": \"RELOAD\"}";
+
+  // queued like a change, but sent as an SSE comment that clients ignore
+  private static final String HEARTBEAT = "";
+  private static final int POLL_MILLIS = 1000;
+
+  private final DataSourceProperties dataSourceProperties;
+  private final NoteProperties.ChangeFeed properties;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  private final Counter received;
+  private final Counter dropped;
+
+  private volatile boolean running;
+  private Thread listener;
+
+  public NoteChangeFeed(DataSourceProperties dataSourceProperties, NoteProperties properties,
+      MeterRegistry meterRegistry) {
+    this.dataSourceProperties = dataSourceProperties;
+    this.properties = properties.getChangeFeed();
+    this.received = Counter.builder("notes.changes.received")
+        .description("Change notifications received from the database")
+        .register(meterRegistry);
+    this.dropped = Counter.builder("notes.changes.dropped")
+        .description("Times a subscriber fell too far behind and its pending changes were replaced by a reload")
+        .register(meterRegistry);
+    Gauge.builder("notes.changes.subscribers", subscribers, Set::size)
+        .description("Open change streams")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Opens a change stream, it ends with the request timeout or when the client goes away.
+   */
+  public SseEmitter subscribe() {
+    var subscriber = new Subscriber(new SseEmitter(), new ArrayBlockingQueue<>(properties.getBufferSize()));
+    subscriber.emitter.onCompletion(subscriber::close);
+    subscriber.emitter.onTimeout(subscriber::close);
+    subscriber.emitter.onError(e -> subscriber.close());
+    // registered once complete, changes arriving before the sender runs wait in its queue
+    subscribers.add(subscriber);
+    subscriber.sender.start();
+    return subscriber.emitter;
+  }
+
+  @Override
+  public synchronized void start() {
+    running = true;
+    listener = Thread.ofPlatform().daemon().name("note-changes").start(this::listen);
+  }
+
+  // open streams are completed here, before the web server's graceful shutdown would wait for them
+  @Override
+  public synchronized void stop() {
+    running = false;
+    listener.interrupt();
+    try {
+      listener.join(POLL_MILLIS * 2L);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    listener = null;
+    subscribers.forEach(subscriber -> subscriber.emitter.complete());
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return listener != null;
+  }
+
+  private void listen() {
+    var reconnecting = false;
+    while (running) {
+      try (var connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+          dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+        try (var statement = connection.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        if (reconnecting) {
+          log.info("Listening for note changes again");
+          publish(RELOAD);
+        }
+        receive(connection);
+      } catch (SQLException e) {
+        if (!running) {
+          return;
+        }
+        log.warn("Lost the note change listener connection, retrying in {}: {}", properties.getReconnectDelay(),
+            e.getMessage());
+        reconnecting = true;
+        try {
+          Thread.sleep(properties.getReconnectDelay());
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void receive(Connection connection) throws SQLException {
+    var pgConnection = connection.unwrap(PGConnection.class);
+    var heartbeatInterval = properties.getHeartbeatInterval().toNanos();
+    var lastHeartbeat = System.nanoTime();
+    while (running) {
+      // blocks until a notification arrives or the timeout passes, so stop() is noticed within a second
+      var notifications = pgConnection.getNotifications(POLL_MILLIS);
+      if (notifications != null) {
+        for (var notification : notifications) {
+          received.increment();
+          publish(notification.getParameter());
+        }
+      }
+      if (System.nanoTime() - lastHeartbeat > heartbeatInterval) {
+        publish(HEARTBEAT);
+        lastHeartbeat = System.nanoTime();
+      }
+    }
+  }
+
+  private void publish(String change) {
+    for (var subscriber : subscribers) {
+      if (!subscriber.queue.offer(change)) {
+        dropped.increment();
+        subscriber.queue.clear();
+        subscriber.queue.offer(RELOAD);
+      }
+    }
+  }
+
+  private final class Subscriber {
+    private final SseEmitter emitter;
+    private final BlockingQueue<String> queue;
+    private final Thread sender;
+
+    private Subscriber(SseEmitter emitter, BlockingQueue<String> queue) {
+      this.emitter = emitter;
+      this.queue = queue;
+      this.sender = Thread.ofVirtual().name("note-changes-sender").unstarted(this::send);
+    }
+
+    private void send() {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          var change = queue.take();
+          emitter.send(change.equals(HEARTBEAT)
+              ? SseEmitter.event().comment("heartbeat")
+              : SseEmitter.event().data(change));
+        }
+      } catch (InterruptedException | IOException | IllegalStateException e) {
+        // closed by the emitter callbacks, or the client went away while sending
+      } finally {
+        close();
+      }
+    }
+
+    private void close() {
+      subscribers.remove(this);
+      if (sender != Thread.currentThread()) {
+        sender.interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the note events relayed from the outbox, delivered at least once and in id order per batch.
+ */
+public interface NoteEventSink {
+
+  void publish(List<NoteEvent> events);
+}
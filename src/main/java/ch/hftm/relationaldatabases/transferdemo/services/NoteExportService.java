@@ -0,0 +1,66 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import ch.hftm.relationaldatabases.transferdemo.mappers.NoteMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams all notes to an output stream. Entities are detached right after they are written, so heap usage stays
+ * constant regardless of the table size.
+ */
+@Service
+@RequiredArgsConstructor
+public class NoteExportService {
+  private final NoteRepository repository;
+  private final NoteMapper mapper;
+  private final EntityManager entityManager;
+  private final ObjectMapper objectMapper;
+
+  @Transactional(readOnly = true)
+  public void export(NoteFileFormat format, OutputStream outputStream) throws IOException {
+    var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    if (format == NoteFileFormat.CSV) {
+      writer.write("uuid,note,created_at,updated_at\n");
+    }
+
+    try (var entities = repository.streamAllNotes()) {
+      entities.forEach(entity -> {
+        write(format, mapper.toDto(entity), writer);
+        entityManager.detach(entity);
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    writer.flush();
+  }
+
+  private void write(NoteFileFormat format, Note note, Writer writer) {
+    try {
+      switch (format) {
+        case NDJSON -> writer.write(objectMapper.writeValueAsString(note));
+        case CSV -> writer.write(String.join(",",
+            note.getUuid().toString(),
+            NoteFileFormat.csvField(note.getNote()),
+            String.valueOf(note.getCreatedAt()),
+            String.valueOf(note.getUpdatedAt())));
+      }
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * File formats supported by the note export and import.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum NoteFileFormat {
+  NDJSON("ndjson", "application/x-ndjson"),
+  CSV("csv", "text/csv");
+
+  private final String extension;
+  private final String contentType;
+
+  public static Optional<NoteFileFormat> fromExtension(String extension) {
+    return Arrays.stream(values()).filter(format -> format.extension.equalsIgnoreCase(extension)).findFirst();
+  }
+
+  public static Optional<NoteFileFormat> fromFileName(String fileName) {
+    if (fileName == null || fileName.lastIndexOf('.') < 0) {
+      return Optional.empty();
+    }
+    return fromExtension(fileName.substring(fileName.lastIndexOf('.') + 1));
+  }
+
+  public static Optional<NoteFileFormat> fromMediaType(MediaType mediaType) {
+    return Arrays.stream(values())
+        .filter(format -> MediaType.parseMediaType(format.contentType).isCompatibleWith(mediaType))
+        .findFirst();
+  }
+
+  // RFC 4180: quote fields containing separators, quotes or line breaks and double embedded quotes. Empty strings are
+  // quoted as well, PostgreSQL COPY reads an unquoted empty field as NULL.
+  static String csvField(String value) {
+    if (value.isEmpty() || value.contains(",") || value.contains("\"") || value.contains("\n")
+        || value.contains("\r")) {
+      return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    return value;
+  }
+}
@@ -0,0 +1,194 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteImportResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bulk import of notes. The upload is streamed into a temporary staging table with PostgreSQL COPY and then merged
+ * into {@code notes} with a single set-based upsert, so memory usage is independent of the upload size.
+ */
+@Service
+@RequiredArgsConstructor
+public class NoteImportService {
+  private static final Set<String> CSV_COLUMNS = Set.of("uuid", "note", "created_at", "updated_at");
+
+  // SQLSTATE class 22
+  private static final String DATA_EXCEPTION = "22";
+
+  // dropped automatically at the end of the transaction; timestamps are accepted (e.g. from an export) but ignored
+  private static final String CREATE_STAGING_TABLE = """
+      CREATE TEMPORARY TABLE notes_import (
+        line_no    BIGINT GENERATED ALWAYS AS IDENTITY,
+        uuid       UUID,
+        note       TEXT,
+        created_at TEXT,
+        updated_at TEXT
+      ) ON COMMIT DROP""";
+
+  // same semantics as NoteService.upsert: missing uuids get a new one, existing notes only get their text and
+  // updated_at and version changed (and only if the text differs), the last occurrence of a uuid in the upload wins
+  private static final String MERGE = """
+      WITH latest AS (
+        SELECT DISTINCT ON (uuid) uuid, note
+        FROM (SELECT COALESCE(uuid, uuid_generate_v7()) AS uuid, note, line_no FROM notes_import) rows
+        ORDER BY uuid, line_no DESC
+      ), merged AS (
+        MERGE INTO notes n
+        USING (SELECT l.uuid, l.note, EXISTS (SELECT FROM notes d WHERE d.uuid = l.uuid AND d.deleted_at IS NOT NULL)
+                 AS recreated
+               FROM latest l) l ON n.uuid = l.uuid
+        WHEN MATCHED AND n.deleted_at IS NOT NULL THEN
+          UPDATE SET note = l.note, created_at = now(), updated_at = now(), version = n.version + 1, deleted_at = NULL
+        WHEN MATCHED AND n.note IS DISTINCT FROM l.note THEN
+          UPDATE SET note = l.note, updated_at = now(), version = n.version + 1
+        WHEN NOT MATCHED THEN
+          INSERT (uuid, note, created_at, updated_at) VALUES (l.uuid, l.note, now(), now())
+        -- a recreated deleted note counts as inserted, like its note.created event
+        RETURNING merge_action() = 'INSERT' OR l.recreated AS inserted
+      )
+      SELECT count(*) FILTER (WHERE inserted) AS inserted, count(*) FILTER (WHERE NOT inserted) AS updated
+      FROM merged""";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+  private final NoteService noteService;
+  private final NoteArchiver archiver;
+
+  @Transactional
+  public NoteImportResult importNotes(NoteFileFormat format, InputStream inputStream) throws IOException {
+    jdbcTemplate.execute(CREATE_STAGING_TABLE);
+
+    long received;
+    try {
+      received = switch (format) {
+        case CSV -> copyCsv(inputStream);
+        case NDJSON -> copyNdjson(inputStream);
+      };
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    jdbcTemplate.execute("ANALYZE notes_import");
+    // archived notes are merged like the others, back in the notes table
+    archiver.restoreFromStaging();
+    var result = jdbcTemplate.queryForObject(MERGE, (rs, rowNum) -> NoteImportResult.builder()
+        .received(received)
+        .inserted(rs.getLong("inserted"))
+        .updated(rs.getLong("updated"))
+        .build());
+    // the merge bypasses NoteService and may have changed any cached note or the first page
+    if (result.getInserted() > 0 || result.getUpdated() > 0) {
+      noteService.evictAllFromCache();
+    }
+    return result;
+  }
+
+  // the header line selects the staging columns, the rest of the file is passed to COPY untouched
+  private long copyCsv(InputStream inputStream) throws IOException {
+    var reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    var header = reader.readLine();
+    if (header == null) {
+      return 0;
+    }
+
+    var columns = Arrays.stream(header.split(",")).map(String::strip).toList();
+    if (!CSV_COLUMNS.containsAll(columns) || !columns.contains("note") || Set.copyOf(columns).size() != columns.size()) {
+      throw new IllegalArgumentException("Invalid CSV header, expected columns out of " + CSV_COLUMNS + ": " + header);
+    }
+
+    var received = copy(connection -> connection.getCopyAPI().copyIn(copySql(columns), reader));
+    // an empty note field is read as NULL, data lines start after the header
+    var missingNote = jdbcTemplate.queryForObject("SELECT min(line_no) FROM notes_import WHERE note IS NULL",
+        Long.class);
+    if (missingNote != null) {
+      throw new IllegalArgumentException("Record " + missingNote + ": note is missing");
+    }
+    return received;
+  }
+
+  // NDJSON is converted to CSV on the fly while it is written to COPY
+  private long copyNdjson(InputStream inputStream) {
+    var columns = List.of("uuid", "note");
+    return copy(connection -> {
+      var copyStream = new PGCopyOutputStream(connection, copySql(columns), 64 * 1024);
+      var writer = new BufferedWriter(new OutputStreamWriter(copyStream, StandardCharsets.UTF_8));
+      try (var rows = objectMapper.readerFor(JsonNode.class).<JsonNode>readValues(inputStream)) {
+        while (rows.hasNextValue()) {
+          var row = rows.nextValue();
+          var line = rows.getCurrentLocation().getLineNr();
+          var uuid = row.path("uuid");
+          var note = row.path("note");
+          if (!note.isTextual()) {
+            throw new IllegalArgumentException("Line " + line + ": note is missing");
+          }
+          writer.write(uuid.isTextual() ? parseUuid(uuid.asText(), line) : "");
+          writer.write(',');
+          writer.write(NoteFileFormat.csvField(note.asText()));
+          writer.write('\n');
+        }
+        writer.flush();
+        return copyStream.endCopy();
+      } finally {
+        // leaves the connection usable if reading the upload failed halfway
+        if (copyStream.isActive()) {
+          copyStream.cancelCopy();
+        }
+      }
+    });
+  }
+
+  private long copy(CopyCallback callback) {
+    return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+      try {
+        return callback.copy(connection.unwrap(PGConnection.class));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (SQLException e) {
+        // data exceptions are caused by the upload, e.g. a malformed uuid, the message names the line
+        if (e.getSQLState() != null && e.getSQLState().startsWith(DATA_EXCEPTION)) {
+          throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        throw e;
+      }
+    });
+  }
+
+  private static String parseUuid(String uuid, long line) {
+    try {
+      return UUID.fromString(uuid).toString();
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Line " + line + ": invalid uuid " + uuid, e);
+    }
+  }
+
+  private static String copySql(List<String> columns) {
+    return "COPY notes_import (" + String.join(", ", columns) + ") FROM STDIN (FORMAT csv)";
+  }
+
+  @FunctionalInterface
+  private interface CopyCallback {
+    long copy(PGConnection connection) throws SQLException, IOException;
+  }
+}
@@ -0,0 +1,105 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the events of the {@code outbox} table to the {@link NoteEventSink}, one transaction per batch.
+ */
+@Slf4j
+@Component
+public class NoteOutboxRelay implements SmartLifecycle {
+  // oldest first; RETURNING has no order, the batch is sorted after claiming
+  private static final String CLAIM_BATCH = """
+      DELETE FROM outbox
+      WHERE id IN (SELECT id FROM outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+      RETURNING id, aggregate_id, event_type, payload::text, created_at""";
+
+  private static final RowMapper<NoteEvent> EVENT_MAPPER = (resultSet, rowNum) -> NoteEvent.builder()
+      .id(resultSet.getLong("id"))
+      .uuid(resultSet.getObject("aggregate_id", UUID.class))
+      .type(resultSet.getString("event_type"))
+      .payload(resultSet.getString("payload"))
+      .createdAt(resultSet.getTimestamp("created_at").toInstant())
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final NoteEventSink sink;
+  private final NoteProperties.Outbox properties;
+  private final Counter published;
+  private ScheduledExecutorService scheduler;
+
+  public NoteOutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+      ObjectProvider<NoteEventSink> sink, NoteProperties properties, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    // without a sink the outbox would only grow, the events are logged instead
+    this.sink = sink.getIfAvailable(LoggingNoteEventSink::new);
+    this.properties = properties.getOutbox();
+    this.published = Counter.builder("notes.outbox.published")
+        .description("Note events published from the outbox")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public synchronized void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("outbox-relay").factory());
+    var interval = properties.getPollInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    scheduler.shutdown();
+    scheduler = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return scheduler != null;
+  }
+
+  /**
+   * Relays batches until the outbox has no more unclaimed events or publishing fails.
+   */
+  void drain() {
+    try {
+      while (relayBatch() == properties.getBatchSize()) {
+        // a full batch, there are probably more
+      }
+    } catch (RuntimeException e) {
+      // rolled back, the events are claimed again with the next poll
+      log.warn("Could not relay note events from the outbox: {}", e.getMessage());
+    }
+  }
+
+  int relayBatch() {
+    var count = transactionTemplate.execute(status -> {
+      var events = jdbcTemplate.query(CLAIM_BATCH, EVENT_MAPPER, properties.getBatchSize());
+      if (events.isEmpty()) {
+        return 0;
+      }
+      events.sort(Comparator.comparingLong(NoteEvent::getId));
+      sink.publish(events);
+      return events.size();
+    });
+    published.increment(count);
+    return count;
+  }
+}
@@ -0,0 +1,79 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the monthly partitions of the notes table (see migration V1.8) ahead of time. The table has no default
+ * partition, a note created in a month without partition cannot be inserted, so the partitions are checked on startup
+ * and then periodically. Creating them is idempotent and serialized in the database, every instance of the
+ * application can do it.
+ */
+@Slf4j
+@Component
+public class NotePartitionMaintainer implements SmartLifecycle {
+  // starts with the previous month, in case the clocks of the application and the database disagree at the turn
+  private static final String CREATE_PARTITIONS =
+      "SELECT create_note_partitions(localtimestamp - INTERVAL '1 month', ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NoteProperties.Partitions properties;
+  private final Counter created;
+  private ScheduledExecutorService scheduler;
+
+  public NotePartitionMaintainer(JdbcTemplate jdbcTemplate, NoteProperties properties, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.properties = properties.getPartitions();
+    this.created = Counter.builder("notes.partitions.created")
+        .description("Monthly partitions of the notes table created ahead of time")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public synchronized void start() {
+    createPartitions();
+    scheduler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().daemon().name("partition-maintainer").factory());
+    var interval = properties.getCheckInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(this::createPartitions, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    scheduler.shutdown();
+    scheduler = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return scheduler != null;
+  }
+
+  /**
+   * Creates the missing partitions up to the configured number of months ahead, returns how many were missing.
+   */
+  int createPartitions() {
+    try {
+      var count = jdbcTemplate.queryForObject(CREATE_PARTITIONS, Integer.class, properties.getMonthsAhead());
+      if (count > 0) {
+        log.info("Created {} partitions of the notes table", count);
+        created.increment(count);
+      }
+      return count;
+    } catch (DataAccessException e) {
+      // tried again with the next check, the existing partitions last until then
+      log.error("Could not create partitions of the notes table: {}", e.getMessage());
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes notes soft deleted for longer than {@code notes.purge.after}, in paced batches.
+ */
+@Slf4j
+@Component
+public class NotePurger implements SmartLifecycle {
+  // oldest deletions first, found through the partial index on deleted_at
+  private static final String PURGE_BATCH = """
+      DELETE FROM notes
+      WHERE (uuid, created_at) IN (SELECT uuid, created_at FROM notes
+                                   WHERE deleted_at < localtimestamp - make_interval(secs => ?)
+                                   ORDER BY deleted_at LIMIT ? FOR UPDATE SKIP LOCKED)""";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NoteProperties.Purge properties;
+  private final Counter purged;
+  private ScheduledExecutorService scheduler;
+
+  public NotePurger(JdbcTemplate jdbcTemplate, NoteProperties properties, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.properties = properties.getPurge();
+    this.purged = Counter.builder("notes.purge.purged")
+        .description("Soft deleted notes removed from the database")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public synchronized void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("note-purger").factory());
+    var interval = properties.getInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(this::purge, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    // interrupts a pause between batches
+    scheduler.shutdownNow();
+    scheduler = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return scheduler != null;
+  }
+
+  /**
+   * Purges batches until no more deleted notes are due, purging fails or the purger is stopped.
+   */
+  void purge() {
+    try {
+      while (purgeBatch() == properties.getBatchSize()) {
+        // a full batch, there are probably more
+        Thread.sleep(properties.getPause());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      // the notes stay deleted and are purged with the next run
+      log.warn("Could not purge deleted notes: {}", e.getMessage());
+    }
+  }
+
+  int purgeBatch() {
+    var count = jdbcTemplate.update(PURGE_BATCH, properties.getAfter().toSeconds(), properties.getBatchSize());
+    purged.increment(count);
+    return count;
+  }
+}
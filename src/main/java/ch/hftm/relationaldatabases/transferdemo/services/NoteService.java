@@ -1,59 +1,587 @@
 package ch.hftm.relationaldatabases.transferdemo.services;
 
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
 import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCriteria;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCursor;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePage;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteSearchCursor;
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ReadYourWrites;
 import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.generators.UuidV7;
 import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
 import ch.hftm.relationaldatabases.transferdemo.mappers.NoteMapper;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+// every public method is timed as notes.service, tagged with the method name
 @Service
-@RequiredArgsConstructor
+@Timed("notes.service")
 public class NoteService {
+  // rough size of a cached Note apart from its text: uuid, timestamps and object headers
+  private static final int NOTE_OVERHEAD = 128;
+
+  private static final int MIN_FRAGMENT_LENGTH = 3;
+
+  // A synchronous cache would run the query inside ConcurrentHashMap.compute, i.e. in a synchronized block, which
+  // pins a virtual thread to its carrier while it waits for a connection. Async caches load on their own threads and
+  // the callers just wait for the shared future.
+  private static final Executor CACHE_LOADER = Executors.newVirtualThreadPerTaskExecutor();
+
   private final NoteRepository repository;
   private final NoteMapper mapper;
+  private final NoteProperties properties;
+  private final EntityManager entityManager;
+  private final EntityManagerFactory entityManagerFactory;
+  private final NoteWriteBehindBuffer writeBuffer;
+  private final NoteArchiver archiver;
+  // the caches load on their own threads, outside of the callers' read-only transactions
+  private final TransactionTemplate readOnlyTransaction;
+
+  // Read-through caches of immutable DTOs, the first page is keyed by page size. A loading cache runs one load per key,
+  // concurrent readers of a cold key wait for it instead of querying themselves. Entries due for a refresh are still
+  // served while they are reloaded in the background.
+  private final AsyncLoadingCache<UUID, Optional<Note>> noteCache;
+  private final AsyncLoadingCache<Integer, NotePage> firstPageCache;
+
+  // Bumped by every eviction, i.e. on every write through this service and once more after its commit. The start time
+  // keeps versions of an earlier run from matching after a restart.
+  private final long startedAt = System.currentTimeMillis();
+  private final AtomicLong changeCount = new AtomicLong();
+
+  private final DistributionSummary getAllRows;
+  private final DistributionSummary getPageRows;
+  private final DistributionSummary upsertAllRows;
+
+  public NoteService(NoteRepository repository, NoteMapper mapper, NoteProperties properties,
+      EntityManager entityManager, EntityManagerFactory entityManagerFactory, NoteWriteBehindBuffer writeBuffer,
+      NoteArchiver archiver, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+    this.repository = repository;
+    this.mapper = mapper;
+    this.properties = properties;
+    this.entityManager = entityManager;
+    this.entityManagerFactory = entityManagerFactory;
+    this.writeBuffer = writeBuffer;
+    this.archiver = archiver;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+
+    var cache = properties.getDtoCache();
+    this.noteCache = Caffeine.newBuilder()
+        .maximumWeight(cache.getMaximumWeight())
+        .weigher((UUID uuid, Optional<Note> note) -> NOTE_OVERHEAD + note.map(NoteService::noteLength).orElse(0))
+        .refreshAfterWrite(cache.getRefreshAfterWrite())
+        .expireAfterWrite(cache.getExpireAfterWrite())
+        .executor(CACHE_LOADER)
+        .recordStats()
+        .buildAsync(uuid -> readOnlyTransaction.execute(status -> loadNote(uuid)));
+    this.firstPageCache = Caffeine.newBuilder()
+        .maximumSize(1)
+        .refreshAfterWrite(cache.getRefreshAfterWrite())
+        .expireAfterWrite(cache.getExpireAfterWrite())
+        .executor(CACHE_LOADER)
+        .recordStats()
+        .buildAsync(size -> readOnlyTransaction.execute(status -> loadFirstPage(size)));
+    CaffeineCacheMetrics.monitor(meterRegistry, noteCache, "note-dtos");
+    CaffeineCacheMetrics.monitor(meterRegistry, firstPageCache, "note-first-page");
+
+    this.getAllRows = rowsSummary(meterRegistry, "getAll");
+    this.getPageRows = rowsSummary(meterRegistry, "getPage");
+    this.upsertAllRows = rowsSummary(meterRegistry, "upsertAll");
+  }
+
+  /**
+   * Returns a version of the notes that changes with every write made through this service.
+   */
+  public String getVersion() {
+    return startedAt + "-" + changeCount.get();
+  }
 
   @Transactional(readOnly = true)
   public List<Note> getAll() {
-    return repository.findAll().stream().map(mapper::toDto).toList();
+    var notes = repository.findAllNotes();
+    getAllRows.record(notes.size());
+    return notes;
+  }
+
+  /**
+   * Returns one page of note previews, newest first. Pass {@code after} to move forward from a cursor, {@code before}
+   * to move back, or neither for the first page, which is served from a cache.
+   */
+  // SUPPORTS: a cache hit should not occupy a connection, the repository calls run in their own transactions
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public NotePage getPage(NoteCursor after, NoteCursor before) {
+    var page = loadPage(after, before);
+    getPageRows.record(page.getNotes().size());
+    return page;
+  }
+
+  private NotePage loadPage(NoteCursor after, NoteCursor before) {
+    var size = properties.getPageSize();
+    var previewLength = properties.getPreviewLength();
+    if (after == null && before == null) {
+      return join(firstPageCache.get(size));
+    }
+
+    // fetch one extra row to know whether another page follows
+    var limit = Limit.of(size + 1);
+
+    if (before != null) {
+      var previews = repository.findPageBefore(before.getCreatedAt(), before.getUuid(), previewLength, limit);
+      if (previews.size() <= size) {
+        // reached the start of the list, show a full first page instead
+        return loadPage(null, null);
+      }
+
+      return toPage(previews.subList(0, size).reversed(), true, true);
+    }
+
+    var previews = repository.findPageAfter(after.getCreatedAt(), after.getUuid(), previewLength, limit);
+    if (previews.isEmpty()) {
+      // cursor points past the end (e.g. notes deleted meanwhile), start over
+      return loadPage(null, null);
+    }
+
+    return toPage(previews.stream().limit(size).toList(), previews.size() > size, true);
+  }
+
+  /**
+   * Returns one page of note previews matching a web search style query (words, "quoted phrases", or, -excluded),
+   * best matches first. Pass the {@code after} cursor of the previous page to continue.
+   */
+  @Transactional(readOnly = true)
+  public NotePage search(String query, NoteSearchCursor after) {
+    var size = properties.getPageSize();
+    var previewLength = properties.getPreviewLength();
+    // fetch one extra row to know whether another page follows
+    var hits = after == null
+        ? repository.search(query, previewLength, size + 1)
+        : repository.searchAfter(query, after.getRank(), after.getUuid(), previewLength, size + 1);
+
+    var notes = hits.stream().limit(size).map(mapper::toPreview).toList();
+    var last = hits.size() > size ? hits.get(size - 1) : null;
+    return NotePage.builder()
+        .notes(notes)
+        .nextCursor(last != null ? new NoteSearchCursor(last.getRank(), last.getUuid()).encode() : null)
+        .build();
   }
 
+  /**
+   * Returns the newest notes containing the fragment, ignoring case. Unlike {@link #search}, the fragment is matched
+   * literally, which suits identifiers and codes. At most {@code notes.fragment-search.max-results} notes are returned.
+   *
+   * @throws IllegalArgumentException if the fragment is shorter than three characters and cannot use the index
+   */
   @Transactional(readOnly = true)
+  public NotePage findContaining(String fragment) {
+    requireSearchableFragment(fragment);
+    var search = properties.getFragmentSearch();
+    limitStatementTime();
+    var notes = repository.findContaining(likePattern(fragment), properties.getPreviewLength(), Limit.of(search.getMaxResults()));
+    return NotePage.builder().notes(notes).build();
+  }
+
+  /**
+   * Returns the notes containing words similar to the text, most similar first, so misspelled fragments still match.
+   * At most {@code notes.fragment-search.max-results} notes are returned.
+   *
+   * @throws IllegalArgumentException if the text is shorter than three characters and cannot use the index
+   */
+  @Transactional(readOnly = true)
+  public NotePage findSimilar(String text) {
+    requireSearchableFragment(text);
+    var search = properties.getFragmentSearch();
+    limitStatementTime();
+    var hits = repository.findSimilar(text, properties.getPreviewLength(), search.getMaxResults());
+    return NotePage.builder().notes(hits.stream().map(mapper::toPreview).toList()).build();
+  }
+
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
   public Optional<Note> findById(UUID uuid) {
-    return repository.findById(uuid).map(mapper::toDto);
+    var note = join(noteCache.get(uuid));
+    // an edit still waiting in the write-behind buffer is newer than the stored text
+    var buffered = writeBuffer.getBuffered(uuid);
+    return buffered == null ? note : note.map(stored -> withEdit(stored, buffered));
   }
 
-  @Transactional
+  /**
+   * Creates or updates a note, a note with a version only if it is still at that version. Edits without a version may
+   * be buffered, see {@link NoteWriteBehindBuffer}.
+   *
+   * @throws ObjectOptimisticLockingFailureException if the note was changed or deleted since it was read
+   */
+  // SUPPORTS: a buffered edit should not occupy a connection, the statements run in their own transactions
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @ReadYourWrites
   public Note upsert(Note note) {
-    NoteEntity entity;
-
-    // Check if this is an update (UUID exists) or create (UUID is null)
-    if (note.getUuid() != null) {
-      var entityOpt = repository.findById(note.getUuid());
-      if (entityOpt.isPresent()) {
-        entity = entityOpt.get();
-        // update entity
+    if (note.getUuid() != null && note.getVersion() == null && writeBuffer.isRunning()) {
+      // Buffered at the version it replaces, the flush skips it if the note was changed directly in the meantime. The
+      // edit is stamped, so pages showing the buffered text get validators of their own.
+      var stored = join(noteCache.get(note.getUuid()));
+      var edit = stored.map(current -> Note.builder().uuid(current.getUuid()).note(note.getNote())
+          .updatedAt(Instant.now()).version(current.getVersion()).build());
+      if (edit.isPresent() && writeBuffer.offer(edit.get())) {
+        return edit.get();
+      }
+    }
+
+    // No UUID provided - create new, otherwise insert or update in a single statement
+    var uuid = note.getUuid() != null ? note.getUuid() : UuidV7.randomUuid();
+    // a direct write supersedes an edit still waiting in the buffer
+    writeBuffer.discard(uuid);
+    var entity = write(uuid, note);
+    if (entity == null && note.getUuid() != null && archiver.restore(List.of(uuid)) > 0) {
+      // the note was archived, the write did not see it
+      entity = write(uuid, note);
+    }
+    evictFromCache(List.of(uuid));
+    if (entity == null) {
+      throw new ObjectOptimisticLockingFailureException(NoteEntity.class, uuid);
+    }
+    return mapper.toDto(entity);
+  }
+
+  /**
+   * Upserts many notes with the same semantics as {@link #upsert(Note)}. Notes are processed in chunks: existing rows
+   * of a chunk are resolved with one query, the changes are flushed as JDBC batches and the persistence context is
+   * cleared afterwards, so memory stays bounded for large collections.
+   */
+  @Transactional
+  @ReadYourWrites
+  public List<Note> upsertAll(Collection<Note> notes) {
+    return upsertAll(notes, true);
+  }
+
+  // writes the edits of NoteWriteBehindBuffer and returns the written notes, an edit of a note changed or deleted since
+  // the version it was buffered at is skipped
+  @Transactional
+  List<Note> upsertBuffered(Collection<Note> notes) {
+    return upsertAll(notes, false);
+  }
+
+  private List<Note> upsertAll(Collection<Note> notes, boolean recreateDeleted) {
+    var result = new ArrayList<Note>(notes.size());
+    var chunkSize = properties.getUpsertChunkSize();
+    var chunk = new ArrayList<Note>(chunkSize);
+
+    for (var note : notes) {
+      chunk.add(note);
+      if (chunk.size() == chunkSize) {
+        result.addAll(upsertChunk(chunk, recreateDeleted));
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      result.addAll(upsertChunk(chunk, recreateDeleted));
+    }
+
+    upsertAllRows.record(result.size());
+    return result;
+  }
+
+  /**
+   * Deletes a note, it is purged later by {@link NotePurger}.
+   */
+  @Transactional
+  @ReadYourWrites
+  public void deleteById(UUID uuid) {
+    writeBuffer.discard(uuid);
+    if (repository.softDeleteById(uuid) == 0) {
+      archiver.delete(uuid);
+    }
+    evictFromCache(List.of(uuid));
+  }
+
+  /**
+   * Deletes all notes matching the criteria, returns how many were deleted.
+   *
+   * @throws IllegalArgumentException if no criterion is set
+   */
+  @Transactional
+  @ReadYourWrites
+  public long deleteMatching(NoteCriteria criteria) {
+    if (criteria.isEmpty()) {
+      throw new IllegalArgumentException("At least one criterion is required to delete notes");
+    }
+    var pattern = criteria.getContaining() != null ? likePattern(criteria.getContaining()) : null;
+    long deleted = repository.softDeleteMatching(criteria.getCreatedBefore(), criteria.getUpdatedBefore(), pattern);
+    deleted += archiver.deleteMatching(criteria.getCreatedBefore(), criteria.getUpdatedBefore(), pattern);
+    if (deleted > 0) {
+      evictAllFromCache();
+    }
+    return deleted;
+  }
+
+  /**
+   * Deletes the notes with the given uuids, returns how many were deleted. The uuids are deleted in chunks of
+   * {@code notes.bulk-chunk-size}, one statement per chunk and tier, each chunk in its own transaction unless called
+   * within one.
+   */
+  @ReadYourWrites
+  public long deleteAll(Collection<UUID> uuids) {
+    long deleted = 0;
+    for (var chunk : chunks(List.copyOf(uuids))) {
+      chunk.forEach(writeBuffer::discard);
+      var array = chunk.toArray(UUID[]::new);
+      deleted += repository.softDeleteAllById(array) + archiver.deleteAll(array);
+      evictFromCache(chunk);
+    }
+    return deleted;
+  }
+
+  /**
+   * Deletes all notes created before the cutoff, returns how many were deleted. Like {@link #deleteAll}, the notes are
+   * deleted in chunks that commit on their own.
+   */
+  @ReadYourWrites
+  public long deleteOlderThan(Instant cutoff) {
+    var chunkSize = properties.getBulkChunkSize();
+    long deleted = 0;
+    List<UUID> chunk;
+    do {
+      chunk = repository.softDeleteCreatedBefore(cutoff, chunkSize);
+      evictFromCache(chunk);
+      deleted += chunk.size();
+    } while (chunk.size() == chunkSize);
+
+    long archived = 0;
+    int count;
+    do {
+      count = archiver.deleteCreatedBefore(cutoff, chunkSize);
+      archived += count;
+    } while (count == chunkSize);
+    if (archived > 0) {
+      // the uuids of the archived notes are not known here
+      evictAllFromCache();
+    }
+    return deleted + archived;
+  }
+
+  /**
+   * Replaces every occurrence of the text in all notes, case-sensitively, and returns how many notes were changed.
+   * Archived notes containing the text are restored first. The notes are restored and changed in chunks that commit on
+   * their own, like {@link #deleteAll}.
+   */
+  @ReadYourWrites
+  public long replaceText(String text, String replacement) {
+    if (text.isEmpty()) {
+      throw new IllegalArgumentException("Text to replace must not be empty");
+    }
+    if (text.equals(replacement)) {
+      return 0;
+    }
+    var chunkSize = properties.getBulkChunkSize();
+    var after = new UUID(0, 0);
+    List<UUID> chunk;
+    do {
+      chunk = archiver.restoreContaining(text, after, chunkSize);
+      after = chunk.isEmpty() ? after : chunk.getLast();
+    } while (chunk.size() == chunkSize);
+
+    var pattern = likePattern(text);
+    after = new UUID(0, 0);
+    long replaced = 0;
+    do {
+      chunk = repository.replaceText(text, replacement, pattern, after, chunkSize);
+      evictFromCache(chunk);
+      replaced += chunk.size();
+      after = chunk.isEmpty() ? after : chunk.getLast();
+    } while (chunk.size() == chunkSize);
+    return replaced;
+  }
+
+  /**
+   * Drops all cached notes, for changes made to the notes table without this service, e.g. by the bulk import.
+   */
+  public void evictAllFromCache() {
+    runNowAndAfterCommit(() -> {
+      changeCount.incrementAndGet();
+      entityManagerFactory.getCache().evict(NoteEntity.class);
+      noteCache.synchronous().invalidateAll();
+      firstPageCache.synchronous().invalidateAll();
+    });
+  }
+
+  private List<Note> upsertChunk(List<Note> notes, boolean recreateDeleted) {
+    var uuids = notes.stream().map(Note::getUuid).filter(Objects::nonNull).collect(Collectors.toSet());
+    if (!uuids.isEmpty()) {
+      // archived and deleted notes would otherwise look new and fail to insert with their claimed uuid
+      archiver.restore(uuids);
+      if (recreateDeleted) {
+        repository.purgeDeleted(uuids);
+      }
+    }
+    var existing = uuids.isEmpty()
+        ? Map.<UUID, NoteEntity>of()
+        : repository.findAllById(uuids).stream().collect(Collectors.toMap(NoteEntity::getUuid, Function.identity()));
+
+    var entities = new ArrayList<NoteEntity>(notes.size());
+    for (var note : notes) {
+      var entity = note.getUuid() != null ? existing.get(note.getUuid()) : null;
+      if (!recreateDeleted && (entity == null || !entity.getVersion().equals(note.getVersion()))) {
+        continue;
+      }
+      if (entity != null) {
         mapper.updateEntity(note, entity);
       } else {
-        // UUID provided but entity not found - create new
+        // known to be new, so persist directly instead of letting save() merge, which would query each row again
+        // and replace a client provided uuid with a generated one
         entity = mapper.toEntity(note);
+        entityManager.persist(entity);
       }
-    } else {
-      // No UUID provided - create new
-      entity = mapper.toEntity(note);
+      entities.add(entity);
     }
 
-    // save updated note
-    return mapper.toDto(repository.save(entity));
+    // write the chunk as batched statements and detach it, timestamps are set during the flush
+    repository.flush();
+    var saved = entities.stream().map(mapper::toDto).toList();
+    entityManager.clear();
+    evictFromCache(saved.stream().map(Note::getUuid).toList());
+    return saved;
   }
 
-  @Transactional
-  public void deleteById(UUID uuid) {
-    repository.deleteById(uuid);
+  private List<List<UUID>> chunks(List<UUID> uuids) {
+    var chunkSize = properties.getBulkChunkSize();
+    var chunks = new ArrayList<List<UUID>>();
+    for (int from = 0; from < uuids.size(); from += chunkSize) {
+      chunks.add(uuids.subList(from, Math.min(from + chunkSize, uuids.size())));
+    }
+    return chunks;
+  }
+
+  // versioned edits only apply at that version, the others insert or overwrite
+  private NoteEntity write(UUID uuid, Note note) {
+    return note.getUuid() != null && note.getVersion() != null
+        ? repository.updateAtVersion(uuid, note.getNote(), note.getVersion())
+        : repository.upsert(uuid, note.getNote());
+  }
+
+  // a note in the second-level cache is served without a query, otherwise its partition is looked up first
+  private Optional<Note> loadNote(UUID uuid) {
+    var entity = entityManagerFactory.getCache().contains(NoteEntity.class, uuid)
+        ? repository.findById(uuid)
+        : repository.findInPartitionById(uuid);
+    return entity.map(mapper::toDto).or(() -> archiver.findById(uuid));
+  }
+
+  private NotePage loadFirstPage(int size) {
+    var previews = repository.findFirstPage(properties.getPreviewLength(), Limit.of(size + 1));
+    return toPage(previews.stream().limit(size).toList(), previews.size() > size, false);
+  }
+
+  // Any write may change the first page. The native upsert bypasses Hibernate, so the second-level cache entries have
+  // to be dropped explicitly as well.
+  private void evictFromCache(Collection<UUID> uuids) {
+    runNowAndAfterCommit(() -> {
+      changeCount.incrementAndGet();
+      var cache = entityManagerFactory.getCache();
+      uuids.forEach(uuid -> cache.evict(NoteEntity.class, uuid));
+      noteCache.synchronous().invalidateAll(uuids);
+      firstPageCache.synchronous().invalidateAll();
+    });
+  }
+
+  // evicting again after the commit also drops old versions that concurrent readers cached in the meantime
+  private static void runNowAndAfterCommit(Runnable eviction) {
+    eviction.run();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          eviction.run();
+        }
+      });
+    }
+  }
+
+  private static DistributionSummary rowsSummary(MeterRegistry meterRegistry, String method) {
+    return DistributionSummary.builder("notes.rows")
+        .description("Notes returned or written per call")
+        .tag("method", method)
+        .register(meterRegistry);
+  }
+
+  // a trigram index only helps once the pattern contains a whole trigram, shorter ones would scan every note
+  private static void requireSearchableFragment(String fragment) {
+    if (fragment.strip().length() < MIN_FRAGMENT_LENGTH) {
+      throw new IllegalArgumentException(
+          String.format("Search text must be at least %d characters long", MIN_FRAGMENT_LENGTH));
+    }
+  }
+
+  // matches the fragment anywhere, with \ escaping literal % and _
+  private static String likePattern(String fragment) {
+    return "%" + fragment.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+  }
+
+  // applies to the rest of the current transaction only, a timed out statement fails with a QueryTimeoutException
+  private void limitStatementTime() {
+    repository.setLocalStatementTimeout(properties.getFragmentSearch().getStatementTimeout().toMillis() + "ms");
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      // rethrow what the repository threw, e.g. a DataAccessException
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private static Note withEdit(Note note, Note edit) {
+    return Note.builder()
+        .uuid(note.getUuid())
+        .note(edit.getNote())
+        .createdAt(note.getCreatedAt())
+        .updatedAt(edit.getUpdatedAt() != null ? edit.getUpdatedAt() : note.getUpdatedAt())
+        .version(note.getVersion())
+        .build();
+  }
+
+  private static int noteLength(Note note) {
+    return note.getNote() != null ? note.getNote().length() : 0;
+  }
+
+  private static NotePage toPage(List<NotePreview> notes, boolean hasNext, boolean hasPrevious) {
+    return NotePage.builder()
+        .notes(notes)
+        .nextCursor(hasNext ? NoteCursor.of(notes.getLast()).encode() : null)
+        .previousCursor(hasPrevious && !notes.isEmpty() ? NoteCursor.of(notes.getFirst()).encode() : null)
+        .build();
   }
 }
@@ -0,0 +1,259 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers versionless note edits per UUID and writes them in batches, active with
+ * {@code notes.write-behind.enabled=true}.
+ */
+@Slf4j
+@Component
+public class NoteWriteBehindBuffer implements SmartLifecycle {
+  // below the phases of the web server, which stops first
+  private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+  // NoteService hands edits to this buffer, so the buffer looks the service up only when it flushes
+  private final ObjectProvider<NoteService> noteService;
+  private final NoteProperties.WriteBehind properties;
+  private final ObjectMapper objectMapper;
+
+  private final Map<UUID, Note> buffered = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+  // offers share the lock, stopping takes it exclusively so no edit is accepted after the last flush
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private ScheduledExecutorService scheduler;
+
+  private final Counter offered;
+  private final Counter coalesced;
+  private final Counter flushed;
+  private final Counter superseded;
+
+  public NoteWriteBehindBuffer(ObjectProvider<NoteService> noteService, NoteProperties properties,
+      ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    this.noteService = noteService;
+    this.properties = properties.getWriteBehind();
+    this.objectMapper = objectMapper;
+    this.offered = Counter.builder("notes.write.behind.offered")
+        .description("Note edits accepted by the write-behind buffer")
+        .register(meterRegistry);
+    this.coalesced = Counter.builder("notes.write.behind.coalesced")
+        .description("Buffered note edits replaced by a later edit of the same note before they were written")
+        .register(meterRegistry);
+    this.flushed = Counter.builder("notes.write.behind.flushed")
+        .description("Buffered notes written to the database")
+        .register(meterRegistry);
+    this.superseded = Counter.builder("notes.write.behind.superseded")
+        .description("Buffered note edits dropped because the note was changed or deleted directly")
+        .register(meterRegistry);
+    Gauge.builder("notes.write.behind.buffered", buffered, Map::size)
+        .description("Notes waiting in the write-behind buffer")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Buffers the note if write-behind is running, a previously buffered edit of the same note is replaced.
+   *
+   * @return false if the note was not buffered and has to be written directly
+   */
+  public boolean offer(Note note) {
+    lock.readLock().lock();
+    try {
+      if (scheduler == null) {
+        return false;
+      }
+      offered.increment();
+      if (buffered.put(note.getUuid(), note) != null) {
+        coalesced.increment();
+      }
+      if (buffered.size() >= properties.getMaxBuffered() && flushRequested.compareAndSet(false, true)) {
+        scheduler.execute(this::flush);
+      }
+      return true;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the buffered edit of a note, null if there is none.
+   */
+  public Note getBuffered(UUID uuid) {
+    return buffered.get(uuid);
+  }
+
+  /**
+   * Drops the buffered edit of a note, e.g. because it is written or deleted directly.
+   */
+  public void discard(UUID uuid) {
+    buffered.remove(uuid);
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return properties.isEnabled();
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  @Override
+  public void start() {
+    lock.writeLock().lock();
+    try {
+      replaySpilled();
+      scheduler = Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("note-write-behind").factory());
+      var interval = properties.getFlushInterval().toMillis();
+      scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void stop() {
+    ScheduledExecutorService stopped;
+    lock.writeLock().lock();
+    try {
+      stopped = scheduler;
+      scheduler = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    stopped.shutdown();
+    try {
+      // a flush that is still running has to finish before the final one
+      stopped.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    if (!buffered.isEmpty()) {
+      spill();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    lock.readLock().lock();
+    try {
+      return scheduler != null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // edits stay buffered until they are written, so a failed write is retried and findById keeps showing them
+  void flush() {
+    flushRequested.set(false);
+    var batch = List.copyOf(buffered.values());
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    List<Note> written;
+    try {
+      written = noteService.getObject().upsertBuffered(batch);
+    } catch (RuntimeException e) {
+      log.warn("Could not write {} buffered notes, retrying with the next flush: {}", batch.size(), e.getMessage());
+      return;
+    }
+
+    var versions = written.stream().collect(Collectors.toMap(Note::getUuid, Note::getVersion));
+    for (var note : batch) {
+      var version = versions.get(note.getUuid());
+      if (!buffered.remove(note.getUuid(), note) && version != null) {
+        // an edit buffered during the write replaces the text just written, not the version it was buffered at
+        buffered.computeIfPresent(note.getUuid(),
+            (uuid, newer) -> Objects.equals(newer.getVersion(), note.getVersion()) ? atVersion(newer, version) : newer);
+      }
+    }
+    flushed.increment(written.size());
+    superseded.increment(batch.size() - written.size());
+  }
+
+  private void spill() {
+    var file = Path.of(properties.getSpillFile());
+    try {
+      var lines = new ArrayList<String>(buffered.size());
+      for (var note : buffered.values()) {
+        lines.add(objectMapper.writeValueAsString(SpilledEdit.of(note)));
+      }
+      // replaced in one step, a crash while writing leaves no partial file to replay
+      var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.write(temporary, lines);
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      log.warn("Saved {} buffered note edits that could not be written on shutdown to {}", lines.size(), file);
+    } catch (IOException e) {
+      log.error("Lost {} buffered note edits that could not be written on shutdown: {}", buffered.size(),
+          buffered.keySet(), e);
+    }
+  }
+
+  private void replaySpilled() {
+    var file = Path.of(properties.getSpillFile());
+    if (!Files.exists(file)) {
+      return;
+    }
+    try {
+      for (var line : Files.readAllLines(file)) {
+        var note = objectMapper.readValue(line, SpilledEdit.class).toNote();
+        buffered.putIfAbsent(note.getUuid(), note);
+      }
+      Files.delete(file);
+      log.info("Buffered {} note edits saved on the last shutdown", buffered.size());
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not read the note edits saved on the last shutdown from " + file, e);
+    }
+  }
+
+  private static Note atVersion(Note note, long version) {
+    return Note.builder().uuid(note.getUuid()).note(note.getNote()).updatedAt(note.getUpdatedAt()).version(version)
+        .build();
+  }
+
+  // Note does not serialize its version, the flush needs it to skip edits of notes changed in the meantime
+  private record SpilledEdit(UUID uuid, String note, Instant updatedAt, Long version) {
+    static SpilledEdit of(Note note) {
+      return new SpilledEdit(note.getUuid(), note.getNote(), note.getUpdatedAt(), note.getVersion());
+    }
+
+    Note toNote() {
+      return Note.builder().uuid(uuid).note(note).updatedAt(updatedAt).version(version).build();
+    }
+  }
+}
@@ -1,14 +1,37 @@
 package ch.hftm.relationaldatabases.transferdemo.web;
 
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCursor;
 import ch.hftm.relationaldatabases.transferdemo.dtos.NoteForm;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteImportResult;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePage;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteSearchCursor;
 import ch.hftm.relationaldatabases.transferdemo.mappers.NoteFormMapper;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteChangeFeed;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteExportService;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteFileFormat;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteImportService;
 import ch.hftm.relationaldatabases.transferdemo.services.NoteService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Controller
@@ -16,14 +39,132 @@ import java.util.UUID;
 public class NoteController {
   private final NoteService service;
   private final NoteFormMapper mapper;
+  private final NoteExportService exportService;
+  private final NoteImportService importService;
+  private final NoteChangeFeed changeFeed;
 
   @GetMapping("/")
-  public String listNotes(Model model) {
-    var notes = service.getAll();
-    model.addAttribute("notes", notes);
+  public String listNotes(@RequestParam(required = false) String after,
+                          @RequestParam(required = false) String before,
+                          Model model,
+                          RedirectAttributes redirectAttributes,
+                          ServletWebRequest request) {
+    NoteCursor afterCursor;
+    NoteCursor beforeCursor;
+    try {
+      afterCursor = after != null ? NoteCursor.decode(after) : null;
+      beforeCursor = before != null ? NoteCursor.decode(before) : null;
+    } catch (IllegalArgumentException e) {
+      redirectAttributes.addFlashAttribute("error", "Invalid page link");
+      return "redirect:/";
+    }
+
+    // every page of the list changes with the notes, a 304 skips loading and rendering it
+    if (isNotModified(request, model, service.getVersion(), null)) {
+      return null;
+    }
+
+    var page = service.getPage(afterCursor, beforeCursor);
+    model.addAttribute("notes", page.getNotes());
+    model.addAttribute("page", page);
     return "notes/list";
   }
 
+  @GetMapping("/notes/search")
+  public String searchNotes(@RequestParam(defaultValue = "") String q,
+                            @RequestParam(defaultValue = "words") String mode,
+                            @RequestParam(required = false) String after,
+                            Model model,
+                            RedirectAttributes redirectAttributes) {
+    if (q.isBlank()) {
+      return "redirect:/";
+    }
+
+    NoteSearchCursor afterCursor;
+    try {
+      afterCursor = after != null ? NoteSearchCursor.decode(after) : null;
+    } catch (IllegalArgumentException e) {
+      redirectAttributes.addFlashAttribute("error", "Invalid page link");
+      return "redirect:/";
+    }
+
+    // words: full-text search, contains: literal substring, similar: fuzzy substring
+    NotePage page;
+    try {
+      page = switch (mode) {
+        case "contains" -> service.findContaining(q);
+        case "similar" -> service.findSimilar(q);
+        default -> service.search(q, afterCursor);
+      };
+    } catch (IllegalArgumentException e) {
+      redirectAttributes.addFlashAttribute("error", e.getMessage());
+      return "redirect:/";
+    } catch (QueryTimeoutException e) {
+      redirectAttributes.addFlashAttribute("error", "Search took too long, try a longer or more specific text");
+      return "redirect:/";
+    }
+
+    model.addAttribute("query", q);
+    model.addAttribute("mode", mode);
+    model.addAttribute("notes", page.getNotes());
+    model.addAttribute("page", page);
+    return "notes/search";
+  }
+
+  // a stream of changes instead of polling the list, all streams share one listener connection
+  @GetMapping(value = "/notes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamChanges() {
+    return changeFeed.subscribe();
+  }
+
+  @GetMapping("/notes/export")
+  public ResponseEntity<StreamingResponseBody> exportNotes(@RequestParam(defaultValue = "ndjson") String format) {
+    var exportFormat = NoteFileFormat.fromExtension(format);
+    if (exportFormat.isEmpty()) {
+      return ResponseEntity.badRequest().build();
+    }
+
+    var fileName = "notes." + exportFormat.get().getExtension();
+    // written on an async thread after the handler returns, the export opens its own read-only transaction
+    StreamingResponseBody body = outputStream -> exportService.export(exportFormat.get(), outputStream);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(exportFormat.get().getContentType()))
+        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+        .body(body);
+  }
+
+  @PostMapping(value = "/notes/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public String importNotes(@RequestParam MultipartFile file, RedirectAttributes redirectAttributes) {
+    var format = NoteFileFormat.fromFileName(file.getOriginalFilename());
+    if (format.isEmpty()) {
+      redirectAttributes.addFlashAttribute("error", "Unsupported file type, expected .ndjson or .csv");
+      return "redirect:/";
+    }
+
+    try (var inputStream = file.getInputStream()) {
+      var result = importService.importNotes(format.get(), inputStream);
+      redirectAttributes.addFlashAttribute("success", String.format("Imported %d notes (%d created, %d updated)",
+          result.getReceived(), result.getInserted(), result.getUpdated()));
+    } catch (Exception e) {
+      redirectAttributes.addFlashAttribute("error", String.format("Error importing notes: %s", e.getMessage()));
+    }
+
+    return "redirect:/";
+  }
+
+  // raw upload for other systems, the request body is streamed into the database without buffering
+  @PostMapping(value = "/notes/import", consumes = {"application/x-ndjson", "text/csv"})
+  @ResponseBody
+  public ResponseEntity<NoteImportResult> importNotes(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                      InputStream body) throws IOException {
+    var format = NoteFileFormat.fromMediaType(MediaType.parseMediaType(contentType)).orElseThrow();
+    try {
+      return ResponseEntity.ok(importService.importNotes(format, body));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
   @GetMapping("/notes/new")
   public String showCreateForm(Model model) {
     model.addAttribute("noteForm", new NoteForm());
@@ -32,19 +173,27 @@ public class NoteController {
   }
 
   @GetMapping("/notes/{uuid}/edit")
-  public String showEditForm(@PathVariable UUID uuid, Model model, RedirectAttributes redirectAttributes) {
+  public String showEditForm(@PathVariable UUID uuid, Model model, RedirectAttributes redirectAttributes,
+                             ServletWebRequest request) {
     var noteOpt = service.findById(uuid);
     if (noteOpt.isEmpty()) {
       redirectAttributes.addFlashAttribute("error", "Note not found");
       return "redirect:/";
     }
 
+    var updatedAt = noteOpt.get().getUpdatedAt();
+    if (isNotModified(request, model, String.valueOf(ChronoUnit.MICROS.between(Instant.EPOCH, updatedAt)), updatedAt)) {
+      return null;
+    }
+
     var noteForm = mapper.toForm(noteOpt.get());
     model.addAttribute("noteForm", noteForm);
     model.addAttribute("isEdit", true);
     return "notes/form";
   }
 
+  // the form carries the version the note was read at, so its saves are checked and written directly, write-behind
+  // only takes edits without a version (see NoteWriteBehindBuffer)
   @PostMapping("/notes")
   public String saveNote(@ModelAttribute NoteForm noteForm, RedirectAttributes redirectAttributes) {
     try {
@@ -53,6 +202,11 @@ public class NoteController {
 
       var action = noteForm.getUuid() == null ? "created" : "updated";
       redirectAttributes.addFlashAttribute("success", String.format("Note %s successfully", action));
+    } catch (OptimisticLockingFailureException e) {
+      // show the current version, the user has to apply their changes to it again
+      redirectAttributes.addFlashAttribute("error",
+          "The note was changed by someone else in the meantime, your changes were not saved");
+      return "redirect:/notes/" + noteForm.getUuid() + "/edit";
     } catch (Exception e) {
       redirectAttributes.addFlashAttribute("error", String.format("Error saving note: %s", e.getMessage()));
     }
@@ -71,4 +225,20 @@ public class NoteController {
 
     return "redirect:/";
   }
+
+  // Sets the validators and checks them against the request's conditional headers. Pages carrying a flash message are
+  // always rendered, the message is only shown once. no-cache makes browsers revalidate instead of guessing a lifetime
+  // from Last-Modified.
+  private static boolean isNotModified(ServletWebRequest request, Model model, String etag, Instant lastModified) {
+    var response = request.getResponse();
+    if (response != null) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+    }
+    if (model.containsAttribute("success") || model.containsAttribute("error")) {
+      return false;
+    }
+    return lastModified != null
+        ? request.checkNotModified(etag, lastModified.toEpochMilli())
+        : request.checkNotModified(etag);
+  }
 }
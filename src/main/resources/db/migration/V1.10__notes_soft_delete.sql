@@ -0,0 +1,74 @@
+-- soft delete: deleting a note only sets deleted_at, NoteEntity hides such rows from all queries and NotePurger
+-- removes them later in small batches, so mass deletions do not turn into a burst of dead tuples and index cleanup.
+-- A deleted note keeps its uuid claimed until it is purged; writing it again recreates it.
+ALTER TABLE notes ADD COLUMN deleted_at TIMESTAMP;
+
+-- only the deleted notes are indexed, the purger finds them without scanning the table
+CREATE INDEX notes_deleted_at_idx ON notes (deleted_at) WHERE deleted_at IS NOT NULL;
+
+-- The soft delete is the deletion consumers see: it publishes note.deleted, purging publishes nothing. Recreating a
+-- deleted note publishes note.created. The archive has no deleted_at, its rows are looked at as JSON.
+CREATE OR REPLACE FUNCTION record_note_event() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+BEGIN
+  IF current_setting('notes.tiering', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+
+  IF TG_OP = 'DELETE' THEN
+    IF to_jsonb(OLD) ->> 'deleted_at' IS NULL THEN
+      INSERT INTO outbox (aggregate_id, event_type, payload)
+      VALUES (OLD.uuid, 'note.deleted', jsonb_build_object('uuid', OLD.uuid, 'version', OLD.version));
+    END IF;
+  ELSIF NEW.deleted_at IS NOT NULL THEN
+    INSERT INTO outbox (aggregate_id, event_type, payload)
+    VALUES (NEW.uuid, 'note.deleted', jsonb_build_object('uuid', NEW.uuid, 'version', NEW.version));
+  ELSE
+    INSERT INTO outbox (aggregate_id, event_type, payload)
+    VALUES (NEW.uuid,
+            CASE WHEN TG_OP = 'INSERT' OR OLD.deleted_at IS NOT NULL THEN 'note.created' ELSE 'note.updated' END,
+            to_jsonb(NEW) - 'search_vector' - 'deleted_at');
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER notes_outbox_update ON notes;
+
+CREATE TRIGGER notes_outbox_update AFTER UPDATE ON notes
+  FOR EACH ROW WHEN (OLD.note IS DISTINCT FROM NEW.note OR (OLD.deleted_at IS NULL) <> (NEW.deleted_at IS NULL))
+  EXECUTE FUNCTION record_note_event();
+
+-- the change feed publishes soft deletes as DELETE and skips purged notes
+CREATE OR REPLACE FUNCTION notify_note_changes() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+DECLARE
+  changes JSONB[];
+  change  JSONB;
+BEGIN
+  IF current_setting('notes.tiering', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+
+  -- each branch may only reference the transition table its trigger defines
+  IF TG_OP = 'DELETE' THEN
+    changes := ARRAY(SELECT jsonb_build_object('op', TG_OP, 'uuid', uuid)
+                     FROM old_notes WHERE deleted_at IS NULL LIMIT 101);
+  ELSIF TG_OP <> 'TRUNCATE' THEN
+    changes := ARRAY(SELECT jsonb_build_object('op', CASE WHEN deleted_at IS NULL THEN TG_OP ELSE 'DELETE' END,
+                                               'uuid', uuid)
+                     FROM new_notes LIMIT 101);
+  END IF;
+
+  IF changes IS NULL OR cardinality(changes) > 100 THEN
+    PERFORM pg_notify('note_changes', jsonb_build_object('op', TG_OP)::text);
+  ELSE
+    FOREACH change IN ARRAY changes LOOP
+      PERFORM pg_notify('note_changes', change::text);
+    END LOOP;
+  END IF;
+  RETURN NULL;
+END;
+$$;
@@ -0,0 +1,19 @@
+-- Archived notes are still notes: lists, searches and exports read both tiers through this view. The archive gets
+-- the search vector and the indexes of the notes table, so every branch of the view is served by the same kind of
+-- index and a newest-first page merges both tiers in index order.
+ALTER TABLE notes_archive ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (to_tsvector('english', note)) STORED;
+
+CREATE INDEX notes_archive_created_at_uuid_idx ON notes_archive (created_at, uuid);
+CREATE INDEX notes_archive_search_vector_idx ON notes_archive USING gin (search_vector);
+CREATE INDEX notes_archive_note_trgm_idx ON notes_archive USING gin (note gin_trgm_ops);
+
+-- PostgreSQL flattens the UNION ALL and pushes conditions, orderings and limits down into every partition and the
+-- archive. A branch with a WHERE clause of its own would not be flattened, so deleted notes are filtered outside.
+CREATE VIEW readable_notes AS
+SELECT uuid, note, created_at, updated_at, version, search_vector
+FROM (SELECT uuid, note, created_at, updated_at, version, search_vector, deleted_at
+      FROM notes
+      UNION ALL
+      SELECT uuid, note, created_at, updated_at, version, search_vector, NULL
+      FROM notes_archive) n
+WHERE deleted_at IS NULL;
@@ -0,0 +1,36 @@
+-- point lookups by uuid: the uuid alone does not tell which partition a note is in, so a lookup probed the primary key
+-- of every partition. note_ids also keeps the partition key of each note, a lookup first reads it there and PostgreSQL
+-- then skips all other partitions at execution time.
+ALTER TABLE note_ids ADD COLUMN created_at TIMESTAMP;
+
+UPDATE note_ids i
+SET created_at = n.created_at
+FROM (SELECT uuid, created_at FROM notes UNION ALL SELECT uuid, created_at FROM notes_archive) n
+WHERE n.uuid = i.uuid;
+
+ALTER TABLE note_ids ALTER COLUMN created_at SET NOT NULL;
+
+-- recreating a deleted note moves it to the partition of its new created_at, an UPDATE that has to follow it
+CREATE OR REPLACE FUNCTION claim_note_id() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+BEGIN
+  IF current_setting('notes.tiering', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO note_ids (uuid, created_at) VALUES (NEW.uuid, NEW.created_at);
+  ELSIF TG_OP = 'UPDATE' THEN
+    UPDATE note_ids SET created_at = NEW.created_at WHERE uuid = NEW.uuid;
+  ELSIF TG_OP = 'DELETE' THEN
+    DELETE FROM note_ids WHERE uuid = OLD.uuid;
+  ELSE
+    DELETE FROM note_ids i WHERE NOT EXISTS (SELECT FROM notes_archive a WHERE a.uuid = i.uuid);
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notes_move_id AFTER UPDATE OF created_at ON notes
+  FOR EACH ROW WHEN (OLD.created_at IS DISTINCT FROM NEW.created_at) EXECUTE FUNCTION claim_note_id();
@@ -0,0 +1,30 @@
+-- The archive is the cold tier, it should cost less than the notes table. Long notes are compressed with lz4 instead
+-- of the default pglz, it compresses faster and decompresses several times faster, or with pglz on servers built
+-- without lz4. PostgreSQL only compresses values of rows larger than about 2 kB, shorter notes are stored as they are.
+-- Rows archived before keep their format until they are moved back and archived again.
+DO
+$$
+BEGIN
+  ALTER TABLE notes_archive ALTER COLUMN note SET COMPRESSION lz4;
+EXCEPTION
+  WHEN feature_not_supported THEN
+    ALTER TABLE notes_archive ALTER COLUMN note SET COMPRESSION pglz;
+END;
+$$;
+
+-- A stored search vector and two GIN indexes made an archived note take more space than a note in the notes table.
+-- Without them, searches scan the archive and compute the vectors of archived notes on the fly: cold notes cost
+-- search time instead of storage.
+DROP VIEW readable_notes;
+DROP INDEX notes_archive_search_vector_idx;
+DROP INDEX notes_archive_note_trgm_idx;
+ALTER TABLE notes_archive DROP COLUMN search_vector;
+
+CREATE VIEW readable_notes AS
+SELECT uuid, note, created_at, updated_at, version, search_vector
+FROM (SELECT uuid, note, created_at, updated_at, version, search_vector, deleted_at
+      FROM notes
+      UNION ALL
+      SELECT uuid, note, created_at, updated_at, version, to_tsvector('english', note), NULL
+      FROM notes_archive) n
+WHERE deleted_at IS NULL;
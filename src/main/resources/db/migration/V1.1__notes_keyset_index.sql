@@ -0,0 +1,2 @@
+-- supports keyset pagination ordered by (created_at, uuid)
+CREATE INDEX notes_created_at_uuid_idx ON notes (created_at, uuid);
@@ -0,0 +1,15 @@
+-- time-ordered RFC 9562 version 7 UUIDs for rows created in SQL, e.g. by the bulk import:
+-- the first 48 bits of a random version 4 UUID are replaced by the unix timestamp in milliseconds
+-- and the version nibble is changed from 4 to 7
+CREATE FUNCTION uuid_generate_v7() RETURNS UUID AS
+$$
+SELECT encode(
+    set_bit(
+        set_bit(
+            overlay(uuid_send(gen_random_uuid())
+                    PLACING substring(int8send(floor(extract(EPOCH FROM clock_timestamp()) * 1000)::BIGINT) FROM 3)
+                    FROM 1 FOR 6),
+            52, 1),
+        53, 1),
+    'hex')::UUID
+$$ LANGUAGE sql VOLATILE;
@@ -0,0 +1,5 @@
+-- full-text search: the generated column keeps the parsed text in sync with every insert and update, the GIN index
+-- finds the notes matching a tsquery without reading the table
+ALTER TABLE notes ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (to_tsvector('english', note)) STORED;
+
+CREATE INDEX notes_search_vector_idx ON notes USING gin (search_vector);
@@ -0,0 +1,5 @@
+-- substring and fuzzy search: the trigram index serves ILIKE '%...%' as well as the similarity operators of pg_trgm,
+-- for fragments like identifiers or codes that full-text search would stem or split
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX notes_note_trgm_idx ON notes USING gin (note gin_trgm_ops);
@@ -0,0 +1,3 @@
+-- optimistic locking: every change of a note increments its version, an edit only applies if the row still has the
+-- version the editor started from. The constant default is stored in the catalog, existing rows are not rewritten.
+ALTER TABLE notes ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
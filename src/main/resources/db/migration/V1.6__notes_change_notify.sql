@@ -0,0 +1,40 @@
+-- change feed: every committed change of notes is published on the note_changes channel as {"op": ..., "uuid": ...},
+-- see NoteChangeFeed. The triggers run once per statement and see all its rows: a statement changing more than 100
+-- notes, e.g. an import, publishes a single notification without uuid instead of one per note. Transition tables
+-- require one trigger per operation.
+CREATE FUNCTION notify_note_changes() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+DECLARE
+  changed UUID[];
+  changed_uuid UUID;
+BEGIN
+  -- each branch may only reference the transition table its trigger defines
+  IF TG_OP = 'DELETE' THEN
+    changed := ARRAY(SELECT uuid FROM old_notes LIMIT 101);
+  ELSIF TG_OP <> 'TRUNCATE' THEN
+    changed := ARRAY(SELECT uuid FROM new_notes LIMIT 101);
+  END IF;
+
+  IF changed IS NULL OR cardinality(changed) > 100 THEN
+    PERFORM pg_notify('note_changes', jsonb_build_object('op', TG_OP)::text);
+  ELSE
+    FOREACH changed_uuid IN ARRAY changed LOOP
+      PERFORM pg_notify('note_changes', jsonb_build_object('op', TG_OP, 'uuid', changed_uuid)::text);
+    END LOOP;
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notes_notify_insert AFTER INSERT ON notes
+  REFERENCING NEW TABLE AS new_notes FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_notify_update AFTER UPDATE ON notes
+  REFERENCING NEW TABLE AS new_notes FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_notify_delete AFTER DELETE ON notes
+  REFERENCING OLD TABLE AS old_notes FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_notify_truncate AFTER TRUNCATE ON notes
+  FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
@@ -0,0 +1,34 @@
+-- transactional outbox: every change of a note is recorded in the same transaction, whichever way it was written
+-- (service, import or plain SQL), and relayed to downstream systems by NoteOutboxRelay, which deletes the rows it
+-- published. The payload is the note as of the change, its version lets consumers skip events arriving late.
+CREATE TABLE outbox
+(
+    id           BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    aggregate_id UUID      NOT NULL,
+    event_type   TEXT      NOT NULL,
+    payload      JSONB     NOT NULL,
+    created_at   TIMESTAMP NOT NULL DEFAULT statement_timestamp()
+);
+
+CREATE FUNCTION record_note_event() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+BEGIN
+  IF TG_OP = 'DELETE' THEN
+    INSERT INTO outbox (aggregate_id, event_type, payload)
+    VALUES (OLD.uuid, 'note.deleted', jsonb_build_object('uuid', OLD.uuid, 'version', OLD.version));
+  ELSE
+    INSERT INTO outbox (aggregate_id, event_type, payload)
+    VALUES (NEW.uuid, CASE TG_OP WHEN 'INSERT' THEN 'note.created' ELSE 'note.updated' END,
+            to_jsonb(NEW) - 'search_vector');
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notes_outbox_insert_delete AFTER INSERT OR DELETE ON notes
+  FOR EACH ROW EXECUTE FUNCTION record_note_event();
+
+-- upserts of an unchanged text still update the row, they are no change worth an event
+CREATE TRIGGER notes_outbox_update AFTER UPDATE ON notes
+  FOR EACH ROW WHEN (OLD.note IS DISTINCT FROM NEW.note) EXECUTE FUNCTION record_note_event();
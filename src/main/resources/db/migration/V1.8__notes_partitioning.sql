@@ -0,0 +1,108 @@
+-- monthly range partitions on created_at: vacuum, index maintenance and retention work on one month at a time, and
+-- queries bounded by created_at only read the partitions of their range. The primary key of a partitioned table
+-- has to contain the partition key, so it becomes (uuid, created_at). The uuid on its own stays unique through the
+-- note_ids table below.
+
+-- creates the missing monthly partitions from the month of from_date up to months_ahead months after the current
+-- one, returns how many it created. Called by NotePartitionMaintainer, the lock keeps instances from racing.
+CREATE FUNCTION create_note_partitions(from_date TIMESTAMP, months_ahead INT) RETURNS INT
+  LANGUAGE plpgsql AS
+$$
+DECLARE
+  month   TIMESTAMP;
+  created INT := 0;
+BEGIN
+  PERFORM pg_advisory_xact_lock(hashtext('create_note_partitions'));
+  FOR month IN SELECT generate_series(date_trunc('month', from_date),
+                                      date_trunc('month', localtimestamp) + make_interval(months => months_ahead),
+                                      INTERVAL '1 month')
+    LOOP
+      IF to_regclass(format('notes_%s', to_char(month, 'YYYY_MM'))) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF notes FOR VALUES FROM (%L) TO (%L)',
+                       format('notes_%s', to_char(month, 'YYYY_MM')), month, month + INTERVAL '1 month');
+        created := created + 1;
+      END IF;
+    END LOOP;
+  RETURN created;
+END;
+$$;
+
+-- the existing notes are copied before the indexes and triggers exist: faster, and no change events for them
+ALTER TABLE notes RENAME TO notes_old;
+
+CREATE TABLE notes
+(
+    uuid          UUID      NOT NULL,
+    note          TEXT      NOT NULL,
+    created_at    TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at    TIMESTAMP NOT NULL DEFAULT NOW(),
+    version       BIGINT    NOT NULL DEFAULT 0,
+    search_vector tsvector GENERATED ALWAYS AS (to_tsvector('english', note)) STORED
+) PARTITION BY RANGE (created_at);
+
+-- There is deliberately no default partition: with partitions only for known months, PostgreSQL reads them in
+-- order and a newest-first page stops in the latest ones. Rows outside all partitions fail to insert, which
+-- NotePartitionMaintainer prevents by creating them ahead of time.
+SELECT create_note_partitions(COALESCE((SELECT min(created_at) FROM notes_old), localtimestamp - INTERVAL '1 month'),
+                              3);
+
+INSERT INTO notes (uuid, note, created_at, updated_at, version)
+SELECT uuid, note, created_at, updated_at, version
+FROM notes_old;
+
+DROP TABLE notes_old;
+
+ALTER TABLE notes ADD PRIMARY KEY (uuid, created_at);
+CREATE INDEX notes_created_at_uuid_idx ON notes (created_at, uuid);
+CREATE INDEX notes_search_vector_idx ON notes USING gin (search_vector);
+CREATE INDEX notes_note_trgm_idx ON notes USING gin (note gin_trgm_ops);
+
+-- a unique index on uuid alone is not possible on the partitioned table. Every note claims its uuid here when it is
+-- inserted, a second note with the same uuid fails like it did with the old primary key.
+CREATE TABLE note_ids
+(
+    uuid UUID PRIMARY KEY
+);
+
+INSERT INTO note_ids (uuid)
+SELECT uuid
+FROM notes;
+
+CREATE FUNCTION claim_note_id() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO note_ids (uuid) VALUES (NEW.uuid);
+  ELSIF TG_OP = 'DELETE' THEN
+    DELETE FROM note_ids WHERE uuid = OLD.uuid;
+  ELSE
+    TRUNCATE note_ids;
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notes_claim_id AFTER INSERT OR DELETE ON notes
+  FOR EACH ROW EXECUTE FUNCTION claim_note_id();
+
+CREATE TRIGGER notes_release_ids AFTER TRUNCATE ON notes
+  FOR EACH STATEMENT EXECUTE FUNCTION claim_note_id();
+
+CREATE TRIGGER notes_notify_insert AFTER INSERT ON notes
+  REFERENCING NEW TABLE AS new_notes FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_notify_update AFTER UPDATE ON notes
+  REFERENCING NEW TABLE AS new_notes FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_notify_delete AFTER DELETE ON notes
+  REFERENCING OLD TABLE AS old_notes FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_notify_truncate AFTER TRUNCATE ON notes
+  FOR EACH STATEMENT EXECUTE FUNCTION notify_note_changes();
+
+CREATE TRIGGER notes_outbox_insert_delete AFTER INSERT OR DELETE ON notes
+  FOR EACH ROW EXECUTE FUNCTION record_note_event();
+
+CREATE TRIGGER notes_outbox_update AFTER UPDATE ON notes
+  FOR EACH ROW WHEN (OLD.note IS DISTINCT FROM NEW.note) EXECUTE FUNCTION record_note_event();
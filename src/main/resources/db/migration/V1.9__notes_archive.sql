@@ -0,0 +1,93 @@
+-- archival tiering: notes not updated for a while are moved here by NoteArchiver, which keeps notes and its indexes
+-- down to the working set. Archived notes have no search vector and no search indexes, only the primary key for
+-- lookups by uuid; long texts are compressed by TOAST as usual. Editing an archived note moves it back.
+CREATE TABLE notes_archive
+(
+    uuid        UUID PRIMARY KEY,
+    note        TEXT      NOT NULL,
+    created_at  TIMESTAMP NOT NULL,
+    updated_at  TIMESTAMP NOT NULL,
+    version     BIGINT    NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT statement_timestamp()
+);
+
+-- finds the notes due for archiving without scanning the whole table
+CREATE INDEX notes_updated_at_idx ON notes (updated_at);
+
+-- Moving a note between the tiers deletes and inserts rows, but does not change the note. The mover sets
+-- notes.tiering for its transaction, the triggers then neither publish changes nor release the claimed uuid.
+CREATE OR REPLACE FUNCTION notify_note_changes() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+DECLARE
+  changed UUID[];
+  changed_uuid UUID;
+BEGIN
+  IF current_setting('notes.tiering', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+
+  -- each branch may only reference the transition table its trigger defines
+  IF TG_OP = 'DELETE' THEN
+    changed := ARRAY(SELECT uuid FROM old_notes LIMIT 101);
+  ELSIF TG_OP <> 'TRUNCATE' THEN
+    changed := ARRAY(SELECT uuid FROM new_notes LIMIT 101);
+  END IF;
+
+  IF changed IS NULL OR cardinality(changed) > 100 THEN
+    PERFORM pg_notify('note_changes', jsonb_build_object('op', TG_OP)::text);
+  ELSE
+    FOREACH changed_uuid IN ARRAY changed LOOP
+      PERFORM pg_notify('note_changes', jsonb_build_object('op', TG_OP, 'uuid', changed_uuid)::text);
+    END LOOP;
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION record_note_event() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+BEGIN
+  IF current_setting('notes.tiering', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+
+  IF TG_OP = 'DELETE' THEN
+    INSERT INTO outbox (aggregate_id, event_type, payload)
+    VALUES (OLD.uuid, 'note.deleted', jsonb_build_object('uuid', OLD.uuid, 'version', OLD.version));
+  ELSE
+    INSERT INTO outbox (aggregate_id, event_type, payload)
+    VALUES (NEW.uuid, CASE TG_OP WHEN 'INSERT' THEN 'note.created' ELSE 'note.updated' END,
+            to_jsonb(NEW) - 'search_vector');
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+-- an archived note keeps its uuid claimed, truncating notes only releases the uuids of the notes it removed
+CREATE OR REPLACE FUNCTION claim_note_id() RETURNS trigger
+  LANGUAGE plpgsql AS
+$$
+BEGIN
+  IF current_setting('notes.tiering', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO note_ids (uuid) VALUES (NEW.uuid);
+  ELSIF TG_OP = 'DELETE' THEN
+    DELETE FROM note_ids WHERE uuid = OLD.uuid;
+  ELSE
+    DELETE FROM note_ids i WHERE NOT EXISTS (SELECT FROM notes_archive a WHERE a.uuid = i.uuid);
+  END IF;
+  RETURN NULL;
+END;
+$$;
+
+-- deleting an archived note is a deletion of the note like any other
+CREATE TRIGGER notes_archive_release_id AFTER DELETE ON notes_archive
+  FOR EACH ROW EXECUTE FUNCTION claim_note_id();
+
+CREATE TRIGGER notes_archive_outbox_delete AFTER DELETE ON notes_archive
+  FOR EACH ROW EXECUTE FUNCTION record_note_event();
@@ -0,0 +1,79 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DisplayName("Metrics Integration Tests")
+class MetricsConfigTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("noteService_whenCalled_shouldTimeEachMethod")
+  void noteService_whenCalled_shouldTimeEachMethod() {
+    // Arrange
+    var saved = noteService.upsert(Note.builder().note("Timed").build());
+
+    // Act
+    noteService.findById(saved.getUuid());
+    noteService.getAll();
+
+    // Assert
+    assertThat(meterRegistry.get("notes.service").tag("method", "upsert").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("notes.service").tag("method", "findById").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("notes.service").tag("method", "getAll").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("prometheusEndpoint_shouldExposeServiceHibernatePoolAndCacheMetrics")
+  void prometheusEndpoint_shouldExposeServiceHibernatePoolAndCacheMetrics() throws Exception {
+    // Arrange
+    noteService.upsert(Note.builder().note("Scraped").build());
+    noteService.getAll();
+
+    // Act & Assert
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("notes_service_seconds_bucket{")))
+        .andExpect(content().string(containsString("notes_rows_count{")))
+        .andExpect(content().string(containsString("hibernate_query_executions_total{")))
+        .andExpect(content().string(containsString("hibernate_second_level_cache_requests_total{")))
+        .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket{")))
+        .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket{")))
+        .andExpect(content().string(containsString("cache_gets_total{cache=\"note-dtos\"")));
+  }
+}
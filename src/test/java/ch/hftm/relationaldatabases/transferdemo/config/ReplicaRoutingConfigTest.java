@@ -0,0 +1,140 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jdbc.ReplicaLagMonitor;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The replica is a second, independent database: rows written to it directly are only visible through reads that
+// were routed there, and rows written through the application only through reads that went to the primary.
+@DisplayName("ReplicaRoutingConfig Integration Tests")
+@TestPropertySource(properties = {
+    "notes.replica.read-your-writes-window=300ms",
+    "notes.replica.lag-check-interval=100ms"
+})
+class ReplicaRoutingConfigTest extends AbstractIntegrationTest {
+  private static final Duration READ_YOUR_WRITES_WINDOW = Duration.ofMillis(300);
+
+  public static PostgreSQLContainer<?> replicaContainer;
+  private static final JdbcTemplate replica;
+
+  static {
+    replicaContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17"))
+      .withDatabaseName("transferdemo")
+      .withUsername("transferdemo")
+      .withPassword("transferdemo");
+    replicaContainer.start();
+
+    var dataSource = new DriverManagerDataSource(replicaContainer.getJdbcUrl(), replicaContainer.getUsername(),
+        replicaContainer.getPassword());
+    Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+    replica = new JdbcTemplate(dataSource);
+  }
+
+  @DynamicPropertySource
+  static void replicaProperties(DynamicPropertyRegistry registry) {
+    registry.add("notes.replica.url", replicaContainer::getJdbcUrl);
+    registry.add("notes.replica.username", replicaContainer::getUsername);
+    registry.add("notes.replica.password", replicaContainer::getPassword);
+  }
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private ReplicaLagMonitor lagMonitor;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    replica.update("DELETE FROM notes");
+  }
+
+  @Test
+  @DisplayName("getAll_afterReadYourWritesWindow_shouldReadFromReplica")
+  void getAll_afterReadYourWritesWindow_shouldReadFromReplica() throws InterruptedException {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    replica.update("INSERT INTO notes (uuid, note) VALUES (?, 'Only on the replica')", uuid);
+    Thread.sleep(READ_YOUR_WRITES_WINDOW.multipliedBy(2));
+
+    // Act
+    var notes = noteService.getAll();
+
+    // Assert
+    assertThat(lagMonitor.isReplicaUsable()).isTrue();
+    assertThat(notes).extracting(Note::getUuid).containsExactly(uuid);
+  }
+
+  @Test
+  @DisplayName("getAll_afterWriteOutsideNoteService_shouldReadFromReplica")
+  void getAll_afterWriteOutsideNoteService_shouldReadFromReplica() throws InterruptedException {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    replica.update("INSERT INTO notes (uuid, note) VALUES (?, 'Only on the replica')", uuid);
+    Thread.sleep(READ_YOUR_WRITES_WINDOW.multipliedBy(2));
+    repository.deleteAll();
+
+    // Act
+    var notes = noteService.getAll();
+
+    // Assert
+    assertThat(notes).extracting(Note::getUuid).containsExactly(uuid);
+  }
+
+  @Test
+  @DisplayName("findById_afterReadYourWritesWindow_shouldLoadFromReplica")
+  void findById_afterReadYourWritesWindow_shouldLoadFromReplica() throws InterruptedException {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    replica.update("INSERT INTO notes (uuid, note) VALUES (?, 'Only on the replica')", uuid);
+    Thread.sleep(READ_YOUR_WRITES_WINDOW.multipliedBy(2));
+
+    // Act
+    var note = noteService.findById(uuid);
+
+    // Assert
+    assertThat(note).map(Note::getNote).contains("Only on the replica");
+  }
+
+  @Test
+  @DisplayName("upsert_shouldWriteToPrimaryAndReadBackFromPrimaryWithinWindow")
+  void upsert_shouldWriteToPrimaryAndReadBackFromPrimaryWithinWindow() throws InterruptedException {
+    // Arrange
+    var note = Note.builder().note("Written to the primary").build();
+
+    // Act
+    var saved = noteService.upsert(note);
+    var readBack = noteService.getAll();
+    Thread.sleep(READ_YOUR_WRITES_WINDOW.multipliedBy(2));
+    var afterWindow = noteService.getAll();
+
+    // Assert
+    assertThat(readBack).extracting(Note::getUuid).containsExactly(saved.getUuid());
+    assertThat(afterWindow).isEmpty();
+    assertThat(replica.queryForObject("SELECT count(*) FROM notes", Long.class)).isZero();
+  }
+}
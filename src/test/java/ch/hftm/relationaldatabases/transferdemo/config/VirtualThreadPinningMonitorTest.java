@@ -0,0 +1,50 @@
+package ch.hftm.relationaldatabases.transferdemo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("VirtualThreadPinningMonitor Tests")
+class VirtualThreadPinningMonitorTest {
+  private final Object lock = new Object();
+
+  @Test
+  @DisplayName("start_withVirtualThreadSleepingInSynchronizedBlock_shouldCountPinnedThread")
+  void start_withVirtualThreadSleepingInSynchronizedBlock_shouldCountPinnedThread() throws Exception {
+    // Arrange
+    var registry = new SimpleMeterRegistry();
+    var monitor = new VirtualThreadPinningMonitor(registry, Duration.ofMillis(10));
+    monitor.start();
+
+    try {
+      // Act
+      Thread.ofVirtual().start(() -> {
+        synchronized (lock) {
+          sleep(50);
+        }
+      }).join();
+
+      // Assert, events are delivered asynchronously about once per second
+      var pinned = registry.get("jvm.threads.virtual.pinned").counter();
+      for (int i = 0; i < 100 && pinned.count() == 0; i++) {
+        Thread.sleep(100);
+      }
+      assertThat(pinned.count()).isGreaterThanOrEqualTo(1);
+    } finally {
+      monitor.stop();
+    }
+    assertThat(monitor.isRunning()).isFalse();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConnectionLimitingDataSource Tests")
+class ConnectionLimitingDataSourceTest {
+
+  @Mock
+  private DataSource target;
+
+  private ConnectionLimitingDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new ConnectionLimitingDataSource(target, 2, Duration.ofMillis(50));
+  }
+
+  @Test
+  @DisplayName("getConnection_beyondLimit_shouldTimeOutWithoutAskingThePool")
+  void getConnection_beyondLimit_shouldTimeOutWithoutAskingThePool() throws SQLException {
+    // Arrange
+    when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+    dataSource.getConnection();
+    dataSource.getConnection();
+
+    // Act & Assert
+    assertThatThrownBy(() -> dataSource.getConnection()).isInstanceOf(SQLTransientConnectionException.class);
+    verify(target, times(2)).getConnection();
+    assertThat(dataSource.getAvailablePermits()).isZero();
+  }
+
+  @Test
+  @DisplayName("close_calledTwice_shouldReturnPermitOnce")
+  void close_calledTwice_shouldReturnPermitOnce() throws SQLException {
+    // Arrange
+    var connection = mock(Connection.class);
+    when(target.getConnection()).thenReturn(connection);
+    var limited = dataSource.getConnection();
+
+    // Act
+    limited.close();
+    limited.close();
+
+    // Assert
+    verify(connection, times(1)).close();
+    assertThat(dataSource.getAvailablePermits()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("getConnection_whenPoolFails_shouldReturnPermit")
+  void getConnection_whenPoolFails_shouldReturnPermit() throws SQLException {
+    // Arrange
+    when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+    // Act & Assert
+    assertThatThrownBy(() -> dataSource.getConnection()).hasMessage("pool exhausted");
+    assertThat(dataSource.getAvailablePermits()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("getConnection_shouldDelegateCallsAndUnwrapToTarget")
+  void getConnection_shouldDelegateCallsAndUnwrapToTarget() throws SQLException {
+    // Arrange
+    var connection = mock(Connection.class);
+    var pgConnection = mock(PGConnection.class);
+    when(target.getConnection()).thenReturn(connection);
+    when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+    when(connection.getAutoCommit()).thenReturn(true);
+
+    // Act
+    var limited = dataSource.getConnection();
+
+    // Assert
+    assertThat(limited.getAutoCommit()).isTrue();
+    assertThat(limited.unwrap(PGConnection.class)).isSameAs(pgConnection);
+    assertThat(((ConnectionProxy) limited).getTargetConnection()).isSameAs(connection);
+  }
+
+  @Test
+  @DisplayName("forPool_withUnstartedPool_shouldLimitToDefaultPoolSizeAndUnwrapToPool")
+  void forPool_withUnstartedPool_shouldLimitToDefaultPoolSizeAndUnwrapToPool() throws SQLException {
+    // Arrange
+    try (var pool = new HikariDataSource()) {
+      // Act
+      var limiter = ConnectionLimitingDataSource.forPool(pool);
+
+      // Assert
+      assertThat(limiter.getAvailablePermits()).isEqualTo(10);
+      assertThat(limiter.unwrap(HikariDataSource.class)).isSameAs(pool);
+    }
+  }
+
+  @Test
+  @DisplayName("getConnection_fromStartedPool_shouldOnlyGiveItTheRemainingTimeout")
+  void getConnection_fromStartedPool_shouldOnlyGiveItTheRemainingTimeout() throws SQLException {
+    // Arrange
+    var pool = mock(HikariDataSource.class);
+    var hikariPool = mock(HikariPool.class);
+    when(pool.getHikariPoolMXBean()).thenReturn(hikariPool);
+    when(hikariPool.getConnection(anyLong())).thenReturn(mock(Connection.class));
+    var limiter = new ConnectionLimitingDataSource(pool, 1, Duration.ofSeconds(1));
+
+    // Act
+    limiter.getConnection();
+
+    // Assert
+    verify(hikariPool).getConnection(longThat(timeout -> timeout > 0 && timeout <= 1000));
+    verify(pool, never()).getConnection();
+  }
+}
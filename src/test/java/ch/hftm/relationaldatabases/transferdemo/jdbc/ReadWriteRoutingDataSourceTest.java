@@ -0,0 +1,163 @@
+package ch.hftm.relationaldatabases.transferdemo.jdbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReadWriteRoutingDataSource Tests")
+class ReadWriteRoutingDataSourceTest {
+
+  @Mock
+  private DataSource primary;
+
+  @Mock
+  private DataSource replica;
+
+  private final AtomicBoolean replicaUsable = new AtomicBoolean(true);
+
+  @BeforeEach
+  void setUp() {
+    TransactionSynchronizationManager.initSynchronization();
+  }
+
+  @AfterEach
+  void tearDown() {
+    TransactionSynchronizationManager.clear();
+    ReadWriteRoutingDataSource.READ_YOUR_WRITES.remove();
+  }
+
+  @Test
+  @DisplayName("getConnection_readOnlyTransaction_shouldUseReplica")
+  void getConnection_readOnlyTransaction_shouldUseReplica() throws SQLException {
+    // Arrange
+    var dataSource = routing(Duration.ofMinutes(1));
+    var connection = mock(Connection.class);
+    when(replica.getConnection()).thenReturn(connection);
+    beginTransaction(true);
+
+    // Act
+    var result = dataSource.getConnection();
+
+    // Assert
+    assertThat(result).isSameAs(connection);
+    verifyNoInteractions(primary);
+  }
+
+  @Test
+  @DisplayName("getConnection_afterReadYourWritesWrite_shouldReadFromPrimaryWithinWindow")
+  void getConnection_afterReadYourWritesWrite_shouldReadFromPrimaryWithinWindow() throws SQLException {
+    // Arrange
+    var dataSource = routing(Duration.ofMinutes(1));
+    ReadWriteRoutingDataSource.READ_YOUR_WRITES.set(true);
+    beginTransaction(false);
+    dataSource.getConnection();
+    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    ReadWriteRoutingDataSource.READ_YOUR_WRITES.remove();
+    beginTransaction(true);
+
+    // Act
+    dataSource.getConnection();
+
+    // Assert
+    verify(primary, times(2)).getConnection();
+    verifyNoInteractions(replica);
+  }
+
+  @Test
+  @DisplayName("getConnection_afterUnmarkedWrite_shouldReadFromReplica")
+  void getConnection_afterUnmarkedWrite_shouldReadFromReplica() throws SQLException {
+    // Arrange
+    var dataSource = routing(Duration.ofMinutes(1));
+    beginTransaction(false);
+    dataSource.getConnection();
+    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    beginTransaction(true);
+
+    // Act
+    dataSource.getConnection();
+
+    // Assert
+    verify(primary, times(1)).getConnection();
+    verify(replica, times(1)).getConnection();
+  }
+
+  @Test
+  @DisplayName("getConnection_afterWriteWithoutWindow_shouldReadFromReplica")
+  void getConnection_afterWriteWithoutWindow_shouldReadFromReplica() throws SQLException {
+    // Arrange
+    var dataSource = routing(Duration.ZERO);
+    ReadWriteRoutingDataSource.READ_YOUR_WRITES.set(true);
+    beginTransaction(false);
+    dataSource.getConnection();
+    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    beginTransaction(true);
+
+    // Act
+    dataSource.getConnection();
+
+    // Assert
+    verify(primary, times(1)).getConnection();
+    verify(replica, times(1)).getConnection();
+  }
+
+  @Test
+  @DisplayName("getConnection_replicaNotUsable_shouldFallBackToPrimary")
+  void getConnection_replicaNotUsable_shouldFallBackToPrimary() throws SQLException {
+    // Arrange
+    var dataSource = routing(Duration.ZERO);
+    replicaUsable.set(false);
+    beginTransaction(true);
+
+    // Act
+    dataSource.getConnection();
+
+    // Assert
+    verify(primary).getConnection();
+    verifyNoInteractions(replica);
+  }
+
+  @Test
+  @DisplayName("getConnection_withoutTransaction_shouldUsePrimaryWithoutWindow")
+  void getConnection_withoutTransaction_shouldUsePrimaryWithoutWindow() throws SQLException {
+    // Arrange
+    var dataSource = routing(Duration.ofMinutes(1));
+    dataSource.getConnection();
+    beginTransaction(true);
+
+    // Act
+    dataSource.getConnection();
+
+    // Assert
+    verify(primary, times(1)).getConnection();
+    verify(replica, times(1)).getConnection();
+  }
+
+  private ReadWriteRoutingDataSource routing(Duration readYourWritesWindow) {
+    var dataSource = new ReadWriteRoutingDataSource(primary, replica, readYourWritesWindow, replicaUsable::get);
+    dataSource.afterPropertiesSet();
+    return dataSource;
+  }
+
+  private static void beginTransaction(boolean readOnly) {
+    TransactionSynchronizationManager.clear();
+    TransactionSynchronizationManager.initSynchronization();
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+  }
+}
@@ -0,0 +1,95 @@
+package ch.hftm.relationaldatabases.transferdemo.jpa.generators;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares primary key index size, WAL volume and insert throughput of random version 4 and time-ordered version 7
+ * UUIDs on a table shaped like the notes table. Run with {@code mvn test -Pbenchmark}, the number of rows can be changed with
+ * {@code -Dbenchmark.rows=...}.
+ */
+@DisplayName("UUID Index Benchmark")
+class UuidIndexBenchmark extends AbstractIntegrationTest {
+  private static final int ROWS = Integer.getInteger("benchmark.rows", 500_000);
+  private static final int BATCH_SIZE = 1_000;
+  // defined here rather than LIKE notes, which follows every change of the partitioned table: the UUID keyed
+  // indexes of a notes partition, without the search indexes that cost both UUID versions the same
+  private static final String CREATE_TABLE = """
+      CREATE TABLE %s
+      (
+          uuid       UUID      NOT NULL,
+          note       TEXT      NOT NULL,
+          created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+          updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+          version    BIGINT    NOT NULL DEFAULT 0,
+          deleted_at TIMESTAMP,
+          PRIMARY KEY (uuid, created_at)
+      );
+      CREATE INDEX ON %s (created_at, uuid)
+      """;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("insert_withVersion7Uuids_shouldProduceSmallerIndexThanVersion4")
+  void insert_withVersion7Uuids_shouldProduceSmallerIndexThanVersion4() {
+    // Act
+    var v4 = run("uuid_benchmark_v4", UUID::randomUUID);
+    var v7 = run("uuid_benchmark_v7", UuidV7::randomUuid);
+
+    // Assert
+    System.out.printf("%n%-8s %12s %14s %14s %12s%n", "uuid", "rows/s", "pkey size", "all indexes", "WAL");
+    for (var result : new Result[]{v4, v7}) {
+      System.out.printf("%-8s %12.0f %14s %14s %12s%n", result.name(), result.rowsPerSecond(),
+          pretty(result.pkeySize()), pretty(result.indexesSize()), pretty(result.walBytes()));
+    }
+    assertThat(v7.pkeySize()).isLessThan(v4.pkeySize());
+  }
+
+  private Result run(String table, Supplier<UUID> uuids) {
+    jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+    jdbcTemplate.execute(CREATE_TABLE.formatted(table, table));
+    try {
+      var insert = "INSERT INTO " + table + " (uuid, note, created_at, updated_at) VALUES (?, ?, ?, ?)";
+      var walStart = jdbcTemplate.queryForObject("SELECT pg_current_wal_insert_lsn()::text", String.class);
+      var start = System.nanoTime();
+
+      for (int offset = 0; offset < ROWS; offset += BATCH_SIZE) {
+        var now = Timestamp.from(Instant.now());
+        var batch = new ArrayList<Object[]>(BATCH_SIZE);
+        for (int i = offset; i < Math.min(offset + BATCH_SIZE, ROWS); i++) {
+          batch.add(new Object[]{uuids.get(), "Benchmark note " + i, now, now});
+        }
+        jdbcTemplate.batchUpdate(insert, batch);
+      }
+
+      var seconds = (System.nanoTime() - start) / 1e9;
+      var walBytes = jdbcTemplate.queryForObject(
+          "SELECT pg_wal_lsn_diff(pg_current_wal_insert_lsn(), ?::pg_lsn)::bigint", Long.class, walStart);
+      var pkeySize = jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, table + "_pkey");
+      var indexesSize = jdbcTemplate.queryForObject("SELECT pg_indexes_size(?::regclass)", Long.class, table);
+      return new Result(table.substring(table.lastIndexOf('_') + 1), ROWS / seconds, pkeySize, indexesSize, walBytes);
+    } finally {
+      jdbcTemplate.execute("DROP TABLE " + table);
+    }
+  }
+
+  private static String pretty(long bytes) {
+    return "%.1f MB".formatted(bytes / 1024.0 / 1024.0);
+  }
+
+  private record Result(String name, double rowsPerSecond, long pkeySize, long indexesSize, long walBytes) {
+  }
+}
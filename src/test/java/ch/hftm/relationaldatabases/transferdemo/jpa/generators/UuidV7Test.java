@@ -0,0 +1,87 @@
+package ch.hftm.relationaldatabases.transferdemo.jpa.generators;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("UuidV7 Tests")
+class UuidV7Test {
+
+  @Test
+  @DisplayName("randomUuid_shouldSetVersionVariantAndTimestamp")
+  void randomUuid_shouldSetVersionVariantAndTimestamp() {
+    // Arrange
+    var before = System.currentTimeMillis();
+
+    // Act
+    var uuid = UuidV7.randomUuid();
+
+    // Assert
+    assertThat(uuid.version()).isEqualTo(7);
+    assertThat(uuid.variant()).isEqualTo(2);
+    assertThat(UuidV7.timestamp(uuid)).isBetween(before, System.currentTimeMillis() + 1000);
+  }
+
+  @Test
+  @DisplayName("randomUuid_shouldBeStrictlyIncreasingWithinAMillisecond")
+  void randomUuid_shouldBeStrictlyIncreasingWithinAMillisecond() {
+    // Act
+    var uuids = IntStream.range(0, 10_000).mapToObj(i -> UuidV7.randomUuid()).toList();
+
+    // Assert
+    assertThat(uuids).isSortedAccordingTo(UUID::compareTo).doesNotHaveDuplicates();
+  }
+
+  @Test
+  @DisplayName("nextState_withClockGoingBackwards_shouldStayMonotonic")
+  void nextState_withClockGoingBackwards_shouldStayMonotonic() {
+    // Arrange
+    var current = UuidV7.nextState(System.currentTimeMillis());
+
+    // Act
+    var next = UuidV7.nextState(0);
+
+    // Assert
+    assertThat(next).isEqualTo(current + 1);
+  }
+
+  @Test
+  @DisplayName("randomUuid_withConcurrentThreads_shouldBeUniqueAndIncreasingPerThread")
+  void randomUuid_withConcurrentThreads_shouldBeUniqueAndIncreasingPerThread() throws Exception {
+    // Arrange
+    Set<UUID> all = ConcurrentHashMap.newKeySet();
+    var perThread = new ArrayList<List<UUID>>();
+
+    // Act
+    try (var executor = Executors.newFixedThreadPool(8)) {
+      var futures = IntStream.range(0, 8)
+          .mapToObj(t -> executor.submit(() -> IntStream.range(0, 10_000).mapToObj(i -> UuidV7.randomUuid()).toList()))
+          .toList();
+      for (var future : futures) {
+        perThread.add(future.get());
+      }
+    }
+    perThread.forEach(all::addAll);
+
+    // Assert
+    assertThat(all).hasSize(80_000);
+    assertThat(perThread).allSatisfy(uuids -> assertThat(uuids).isSortedAccordingTo(UUID::compareTo));
+  }
+
+  @Test
+  @DisplayName("timestamp_withVersion4Uuid_shouldThrowException")
+  void timestamp_withVersion4Uuid_shouldThrowException() {
+    assertThatThrownBy(() -> UuidV7.timestamp(UUID.randomUUID()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
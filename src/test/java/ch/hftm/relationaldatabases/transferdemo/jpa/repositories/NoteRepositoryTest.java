@@ -1,6 +1,11 @@
 package ch.hftm.relationaldatabases.transferdemo.jpa.repositories;
 
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
 import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.ReadableNoteEntity;
+import jakarta.persistence.QueryTimeoutException;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +15,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,7 +23,11 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.utility.DockerImageName;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -73,6 +83,45 @@ class NoteRepositoryTest {
     assertThat(savedEntity.getCreatedAt()).isCloseTo(savedEntity.getUpdatedAt(), within(1000, java.time.temporal.ChronoUnit.MILLIS));
   }
 
+  @Test
+  @DisplayName("save_withNewEntities_shouldGenerateTimeOrderedVersion7Uuids")
+  void save_withNewEntities_shouldGenerateTimeOrderedVersion7Uuids() {
+    // Arrange
+    var entities = new ArrayList<NoteEntity>();
+    for (int i = 0; i < 10; i++) {
+      entities.add(NoteEntity.builder().note("Note " + i).build());
+    }
+
+    // Act
+    var saved = repository.saveAll(entities);
+    entityManager.flush();
+
+    // Assert
+    var uuids = saved.stream().map(NoteEntity::getUuid).toList();
+    assertThat(uuids).allSatisfy(uuid -> assertThat(uuid.version()).isEqualTo(7));
+    assertThat(uuids).isSortedAccordingTo(Comparator.naturalOrder());
+  }
+
+  @Test
+  @DisplayName("persist_withAssignedUuid_shouldKeepThatUuid")
+  void persist_withAssignedUuid_shouldKeepThatUuid() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var entity = NoteEntity.builder()
+        .uuid(uuid)
+        .note("Imported note")
+        .build();
+
+    // Act
+    entityManager.persistAndFlush(entity);
+    entityManager.clear();
+
+    // Assert
+    var found = repository.findById(uuid);
+    assertThat(found).isPresent();
+    assertThat(found.get().getNote()).isEqualTo("Imported note");
+  }
+
   @Test
   @DisplayName("save_withExistingEntity_shouldUpdateTimestamp")
   void save_withExistingEntity_shouldUpdateTimestamp() throws InterruptedException {
@@ -99,6 +148,7 @@ class NoteRepositoryTest {
     assertThat(updatedEntity.getNote()).isEqualTo("Updated content");
     assertThat(updatedEntity.getCreatedAt()).isEqualTo(originalCreatedAt); // Should not change
     assertThat(updatedEntity.getUpdatedAt()).isAfter(originalUpdatedAt); // Should be updated
+    assertThat(updatedEntity.getVersion()).isEqualTo(1L);
   }
 
   @Test
@@ -208,7 +258,7 @@ class NoteRepositoryTest {
 
     // Act
     var noteTexts = repository.streamAllNotes()
-        .map(NoteEntity::getNote)
+        .map(ReadableNoteEntity::getNote)
         .sorted()
         .toList();
 
@@ -309,4 +359,376 @@ class NoteRepositoryTest {
     assertThat(savedEntities).extracting(NoteEntity::getNote)
         .containsExactlyInAnyOrder("Batch note 1", "Batch note 2", "Batch note 3");
   }
+
+  @Test
+  @DisplayName("keysetPages_shouldWalkAllNotesNewestFirstWithoutGapsOrDuplicates")
+  void keysetPages_shouldWalkAllNotesNewestFirstWithoutGapsOrDuplicates() {
+    // Arrange
+    for (var i = 1; i <= 7; i++) {
+      repository.save(NoteEntity.builder().note("Page note " + i).build());
+    }
+    entityManager.flush();
+    entityManager.clear(); // reload timestamps with database precision
+
+    var expected = repository.findAll().stream()
+        .sorted(Comparator.comparing(NoteEntity::getCreatedAt).thenComparing(NoteEntity::getUuid).reversed())
+        .map(NoteEntity::getUuid)
+        .toList();
+
+    // Act - walk forward three notes at a time
+    var visited = new ArrayList<UUID>();
+    var page = repository.findFirstPage(280, Limit.of(3));
+    while (!page.isEmpty()) {
+      page.forEach(preview -> visited.add(preview.getUuid()));
+      var last = page.getLast();
+      page = repository.findPageAfter(last.getCreatedAt(), last.getUuid(), 280, Limit.of(3));
+    }
+
+    // Assert
+    assertThat(visited).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  @DisplayName("findAllNotes_shouldProjectDtosWithoutManagingEntities")
+  void findAllNotes_shouldProjectDtosWithoutManagingEntities() {
+    // Arrange
+    var saved = repository.save(NoteEntity.builder().note("Projected note").build());
+    entityManager.flush();
+    entityManager.clear();
+
+    // Act
+    var notes = repository.findAllNotes();
+
+    // Assert
+    assertThat(notes).singleElement().satisfies(note -> {
+      assertThat(note.getUuid()).isEqualTo(saved.getUuid());
+      assertThat(note.getNote()).isEqualTo("Projected note");
+      assertThat(note.getCreatedAt()).isNotNull();
+    });
+    assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("findFirstPage_withLongNote_shouldReturnTruncatedPreview")
+  void findFirstPage_withLongNote_shouldReturnTruncatedPreview() {
+    // Arrange
+    repository.save(NoteEntity.builder().note("Short").build());
+    entityManager.flush();
+    repository.save(NoteEntity.builder().note("A rather long note").build());
+    entityManager.flush();
+    entityManager.clear();
+
+    // Act
+    var page = repository.findFirstPage(8, Limit.of(2));
+
+    // Assert
+    assertThat(page).extracting(NotePreview::getPreview).containsExactly("A rather", "Short");
+    assertThat(page).extracting(NotePreview::isTruncated).containsExactly(true, false);
+  }
+
+  @Test
+  @DisplayName("search_withMatchingWords_shouldRankBestMatchesFirst")
+  void search_withMatchingWords_shouldRankBestMatchesFirst() {
+    // Arrange
+    repository.save(NoteEntity.builder().note("Buy milk").build());
+    repository.save(NoteEntity.builder().note("Postgres indexes: a GIN index speeds up full-text search").build());
+    repository.save(NoteEntity.builder().note("Searching notes with an index on the search vector").build());
+    entityManager.flush();
+
+    // Act
+    var hits = repository.search("search index", 280, 10);
+
+    // Assert - stemming matches "Searching" and "indexes" as well
+    assertThat(hits).hasSize(2);
+    assertThat(hits.get(0).getRank()).isGreaterThanOrEqualTo(hits.get(1).getRank());
+    assertThat(hits).extracting(NoteRepository.SearchHit::getPreview)
+        .containsExactlyInAnyOrder("Postgres indexes: a GIN index speeds up full-text search",
+            "Searching notes with an index on the search vector");
+    assertThat(hits.get(0).getCreatedAt()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("searchAfter_withCursorOfLastHit_shouldReturnRemainingHitsOnce")
+  void searchAfter_withCursorOfLastHit_shouldReturnRemainingHitsOnce() {
+    // Arrange - equal ranks, so the uuid decides the order
+    for (var i = 1; i <= 5; i++) {
+      repository.save(NoteEntity.builder().note("Meeting notes " + i).build());
+    }
+    entityManager.flush();
+    var expected = repository.search("meeting", 280, 10).stream().map(NoteRepository.SearchHit::getUuid).toList();
+
+    // Act - walk two hits at a time
+    var visited = new ArrayList<UUID>();
+    var page = repository.search("meeting", 280, 2);
+    while (!page.isEmpty()) {
+      page.forEach(hit -> visited.add(hit.getUuid()));
+      var last = page.getLast();
+      page = repository.searchAfter("meeting", last.getRank(), last.getUuid(), 280, 2);
+    }
+
+    // Assert
+    assertThat(expected).hasSize(5);
+    assertThat(visited).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  @DisplayName("findContaining_withEscapedWildcards_shouldMatchLiterallyIgnoringCase")
+  void findContaining_withEscapedWildcards_shouldMatchLiterallyIgnoringCase() {
+    // Arrange
+    repository.save(NoteEntity.builder().note("Order ORD-100_A shipped").build());
+    repository.save(NoteEntity.builder().note("Order ORD-1000A pending").build());
+    repository.save(NoteEntity.builder().note("Buy milk").build());
+    entityManager.flush();
+
+    // Act
+    var hits = repository.findContaining("%ord-100\\_a%", 280, Limit.of(10));
+
+    // Assert - an unescaped _ would match "ORD-1000A" as well
+    assertThat(hits).extracting(NotePreview::getPreview).containsExactly("Order ORD-100_A shipped");
+  }
+
+  @Test
+  @DisplayName("findSimilar_withFragment_shouldReturnSimilarNotesMostSimilarFirst")
+  void findSimilar_withFragment_shouldReturnSimilarNotesMostSimilarFirst() {
+    // Arrange
+    repository.save(NoteEntity.builder().note("Ticket INFRA-4712 rolled back").build());
+    repository.save(NoteEntity.builder().note("Ticket INFRA-4711 deployed").build());
+    repository.save(NoteEntity.builder().note("Buy milk").build());
+    entityManager.flush();
+
+    // Act
+    var hits = repository.findSimilar("infra-4711", 280, 10);
+
+    // Assert
+    assertThat(hits).extracting(NoteRepository.SearchHit::getPreview)
+        .containsExactly("Ticket INFRA-4711 deployed", "Ticket INFRA-4712 rolled back");
+    assertThat(hits.get(0).getRank()).isGreaterThan(hits.get(1).getRank());
+  }
+
+  @Test
+  @DisplayName("setLocalStatementTimeout_shouldCancelLongerStatementsOfTransaction")
+  void setLocalStatementTimeout_shouldCancelLongerStatementsOfTransaction() {
+    // Act
+    var timeout = repository.setLocalStatementTimeout("50ms");
+
+    // Assert
+    assertThat(timeout).isEqualTo("50ms");
+    assertThatThrownBy(() -> entityManager.getEntityManager().createNativeQuery("SELECT pg_sleep(1)").getSingleResult())
+        .isInstanceOf(QueryTimeoutException.class);
+  }
+
+  @Test
+  @DisplayName("findPageBefore_shouldReturnPrecedingNotesClosestFirst")
+  void findPageBefore_shouldReturnPrecedingNotesClosestFirst() {
+    // Arrange
+    for (var i = 1; i <= 5; i++) {
+      repository.save(NoteEntity.builder().note("Back note " + i).build());
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    var newestFirst = repository.findFirstPage(280, Limit.of(5));
+    var cursor = newestFirst.get(3);
+
+    // Act
+    var before = repository.findPageBefore(cursor.getCreatedAt(), cursor.getUuid(), 280, Limit.of(2));
+
+    // Assert
+    assertThat(before).extracting(NotePreview::getUuid)
+        .containsExactly(newestFirst.get(2).getUuid(), newestFirst.get(1).getUuid());
+  }
+
+  @Test
+  @DisplayName("upsert_withUnknownUuid_shouldInsertWithTimestamps")
+  void upsert_withUnknownUuid_shouldInsertWithTimestamps() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+
+    // Act
+    var inserted = repository.upsert(uuid, "Inserted note");
+
+    // Assert
+    assertThat(inserted.getUuid()).isEqualTo(uuid);
+    assertThat(inserted.getNote()).isEqualTo("Inserted note");
+    assertThat(inserted.getCreatedAt()).isNotNull();
+    assertThat(inserted.getUpdatedAt()).isEqualTo(inserted.getCreatedAt());
+    assertThat(inserted.getVersion()).isZero();
+    assertThat(repository.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("upsert_withExistingUuid_shouldKeepCreatedAtAndBumpUpdatedAt")
+  void upsert_withExistingUuid_shouldKeepCreatedAtAndBumpUpdatedAt() throws InterruptedException {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var original = repository.upsert(uuid, "Original content");
+    entityManager.clear(); // the upsert returns managed entities, read the next result fresh
+    Thread.sleep(10);
+
+    // Act
+    var updated = repository.upsert(uuid, "Updated content");
+
+    // Assert
+    assertThat(updated.getNote()).isEqualTo("Updated content");
+    assertThat(updated.getCreatedAt()).isEqualTo(original.getCreatedAt());
+    assertThat(updated.getUpdatedAt()).isAfter(original.getUpdatedAt());
+    assertThat(updated.getVersion()).isEqualTo(original.getVersion() + 1);
+    assertThat(repository.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("upsert_withUnchangedText_shouldNotBumpUpdatedAt")
+  void upsert_withUnchangedText_shouldNotBumpUpdatedAt() throws InterruptedException {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var original = repository.upsert(uuid, "Same content");
+    entityManager.clear();
+    Thread.sleep(10);
+
+    // Act
+    var unchanged = repository.upsert(uuid, "Same content");
+
+    // Assert
+    assertThat(unchanged.getUpdatedAt()).isEqualTo(original.getUpdatedAt());
+    assertThat(unchanged.getVersion()).isEqualTo(original.getVersion());
+  }
+
+  @Test
+  @DisplayName("updateAtVersion_withCurrentVersion_shouldUpdateAndIncrementVersion")
+  void updateAtVersion_withCurrentVersion_shouldUpdateAndIncrementVersion() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var original = repository.upsert(uuid, "Original content");
+    entityManager.clear();
+
+    // Act
+    var updated = repository.updateAtVersion(uuid, "Edited content", original.getVersion());
+
+    // Assert
+    assertThat(updated.getNote()).isEqualTo("Edited content");
+    assertThat(updated.getVersion()).isEqualTo(original.getVersion() + 1);
+    assertThat(updated.getCreatedAt()).isEqualTo(original.getCreatedAt());
+  }
+
+  @Test
+  @DisplayName("updateAtVersion_withOutdatedVersion_shouldReturnNullAndKeepConcurrentChange")
+  void updateAtVersion_withOutdatedVersion_shouldReturnNullAndKeepConcurrentChange() {
+    // Arrange - two editors read version 0, the first one saves
+    var uuid = UUID.randomUUID();
+    var read = repository.upsert(uuid, "Original content").getVersion();
+    entityManager.clear();
+    repository.updateAtVersion(uuid, "First edit", read);
+    entityManager.clear();
+
+    // Act
+    var second = repository.updateAtVersion(uuid, "Second edit", read);
+
+    // Assert
+    assertThat(second).isNull();
+    assertThat(repository.findById(uuid)).get().extracting(NoteEntity::getNote).isEqualTo("First edit");
+  }
+
+  @Test
+  @DisplayName("findInPartitionById_withNoteMovedToOtherPartition_shouldFollowIt")
+  void findInPartitionById_withNoteMovedToOtherPartition_shouldFollowIt() {
+    // Arrange - changing created_at moves the row to the partition of the previous month
+    var uuid = repository.upsert(UUID.randomUUID(), "Moved note").getUuid();
+    entityManager.getEntityManager()
+        .createNativeQuery("UPDATE notes SET created_at = created_at - INTERVAL '1 month' WHERE uuid = :uuid")
+        .setParameter("uuid", uuid)
+        .executeUpdate();
+    entityManager.clear();
+
+    // Act
+    var found = repository.findInPartitionById(uuid);
+    var deleted = repository.softDeleteById(uuid);
+
+    // Assert
+    assertThat(found).get().extracting(NoteEntity::getNote).isEqualTo("Moved note");
+    assertThat(deleted).isEqualTo(1);
+    assertThat(repository.findInPartitionById(uuid)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("updateAtVersion_withDeletedNote_shouldReturnNullWithoutRecreatingIt")
+  void updateAtVersion_withDeletedNote_shouldReturnNullWithoutRecreatingIt() {
+    // Act
+    var updated = repository.updateAtVersion(UUID.randomUUID(), "Edit of a deleted note", 0);
+
+    // Assert
+    assertThat(updated).isNull();
+    assertThat(repository.count()).isZero();
+  }
+
+  @Test
+  @DisplayName("upsert_withNullNote_shouldThrowException")
+  void upsert_withNullNote_shouldThrowException() {
+    // Act & Assert
+    assertThatThrownBy(() -> repository.upsert(UUID.randomUUID(), null))
+        .isInstanceOf(DataIntegrityViolationException.class);
+  }
+
+  @Test
+  @DisplayName("persist_withUuidOfExistingNoteInOtherPartition_shouldThrowException")
+  void persist_withUuidOfExistingNoteInOtherPartition_shouldThrowException() {
+    // Arrange - the primary key is (uuid, created_at), only note_ids keeps the uuid unique across partitions
+    var uuid = UUID.randomUUID();
+    repository.upsert(uuid, "Original content");
+    var nativeQuery = entityManager.getEntityManager().createNativeQuery(
+        "INSERT INTO notes (uuid, note, created_at) VALUES (?, 'Duplicate', localtimestamp - INTERVAL '1 month')");
+
+    // Act & Assert
+    assertThatThrownBy(() -> nativeQuery.setParameter(1, uuid).executeUpdate())
+        .isInstanceOf(ConstraintViolationException.class)
+        .hasMessageContaining("note_ids_pkey");
+  }
+
+  @Test
+  @DisplayName("keysetPages_acrossMonthlyPartitions_shouldOnlyScanPartitionsOnCursorSide")
+  void keysetPages_acrossMonthlyPartitions_shouldOnlyScanPartitionsOnCursorSide() {
+    // Arrange - one note in each of three past months
+    var session = entityManager.getEntityManager();
+    session.createNativeQuery("SELECT create_note_partitions(CAST('2024-01-01' AS timestamp), 0)").getSingleResult();
+    for (var month = 1; month <= 3; month++) {
+      session.createNativeQuery("INSERT INTO notes (uuid, note, created_at) VALUES (?, ?, ?)")
+          .setParameter(1, UUID.randomUUID())
+          .setParameter(2, "Note of month " + month)
+          .setParameter(3, Instant.parse("2024-0" + month + "-15T12:00:00Z"))
+          .executeUpdate();
+    }
+    var february = repository.findFirstPage(280, Limit.of(100)).stream()
+        .filter(preview -> preview.getPreview().equals("Note of month 2"))
+        .findFirst().orElseThrow();
+
+    // Act
+    var scannedBefore = scannedPartitions();
+    var after = repository.findPageAfter(february.getCreatedAt(), february.getUuid(), 280, Limit.of(10));
+    var scannedAfter = scannedPartitions();
+    var before = repository.findPageBefore(february.getCreatedAt(), february.getUuid(), 280, Limit.of(1));
+    var scannedLast = scannedPartitions();
+
+    // Assert - the scan counts add up over the transaction, each call is measured by the difference
+    assertThat(after).extracting(NotePreview::getPreview).containsExactly("Note of month 1");
+    assertThat(before).extracting(NotePreview::getPreview).containsExactly("Note of month 3");
+    assertThat(newlyScanned(scannedBefore, scannedAfter)).containsOnly("notes_2024_01", "notes_2024_02");
+    assertThat(newlyScanned(scannedAfter, scannedLast)).doesNotContain("notes_2024_01").contains("notes_2024_02");
+  }
+
+  // index scans per partition of notes in the current transaction
+  private Map<String, Long> scannedPartitions() {
+    List<Object[]> rows = entityManager.getEntityManager().createNativeQuery("""
+        SELECT relname, idx_scan FROM pg_stat_xact_user_tables
+        WHERE relid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = CAST('notes' AS regclass))""",
+        Object[].class).getResultList();
+    var scans = new HashMap<String, Long>();
+    rows.forEach(row -> scans.put((String) row[0], ((Number) row[1]).longValue()));
+    return scans;
+  }
+
+  private static List<String> newlyScanned(Map<String, Long> before, Map<String, Long> after) {
+    return after.entrySet().stream()
+        .filter(entry -> entry.getValue() > before.getOrDefault(entry.getKey(), 0L))
+        .map(Map.Entry::getKey)
+        .toList();
+  }
 }
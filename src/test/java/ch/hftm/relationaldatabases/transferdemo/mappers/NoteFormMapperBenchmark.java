@@ -0,0 +1,57 @@
+package ch.hftm.relationaldatabases.transferdemo.mappers;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteForm;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the form mapping done on the edit and save requests, run with {@code mvn test -Pjmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteFormMapperBenchmark {
+  private NoteFormMapper mapper;
+  private Note note;
+  private NoteForm form;
+
+  @Setup
+  public void setUp() {
+    mapper = Mappers.getMapper(NoteFormMapper.class);
+    var now = Instant.now();
+    note = Note.builder()
+        .uuid(UUID.randomUUID())
+        .note("Benchmark note ".repeat(10))
+        .createdAt(now)
+        .updatedAt(now)
+        .build();
+    form = mapper.toForm(note);
+  }
+
+  @Benchmark
+  public NoteForm toForm() {
+    return mapper.toForm(note);
+  }
+
+  @Benchmark
+  public Note toDto() {
+    return mapper.toDto(form);
+  }
+}
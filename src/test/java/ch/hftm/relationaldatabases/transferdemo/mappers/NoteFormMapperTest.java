@@ -36,6 +36,7 @@ class NoteFormMapperTest {
         .note(noteText)
         .createdAt(createdAt)
         .updatedAt(updatedAt)
+        .version(4L)
         .build();
 
     // Act
@@ -45,6 +46,7 @@ class NoteFormMapperTest {
     assertThat(form).isNotNull();
     assertThat(form.getUuid()).isEqualTo(uuid);
     assertThat(form.getNote()).isEqualTo(noteText);
+    assertThat(form.getVersion()).isEqualTo(4L);
   }
 
   @Test
@@ -73,7 +75,7 @@ class NoteFormMapperTest {
     var uuid = UUID.randomUUID();
     var noteText = "Form note content";
 
-    var form = new NoteForm(uuid, noteText);
+    var form = new NoteForm(uuid, noteText, 4L);
 
     // Act
     var dto = mapper.toDto(form);
@@ -82,6 +84,7 @@ class NoteFormMapperTest {
     assertThat(dto).isNotNull();
     assertThat(dto.getUuid()).isEqualTo(uuid);
     assertThat(dto.getNote()).isEqualTo(noteText);
+    assertThat(dto.getVersion()).isEqualTo(4L);
     // Timestamps should be null (ignored in mapping)
     assertThat(dto.getCreatedAt()).isNull();
     assertThat(dto.getUpdatedAt()).isNull();
@@ -92,7 +95,7 @@ class NoteFormMapperTest {
   void toDto_withNewForm_shouldMapWithoutUuid() {
     // Arrange
     var noteText = "New form content";
-    var form = new NoteForm(null, noteText);
+    var form = new NoteForm(null, noteText, null);
 
     // Act
     var dto = mapper.toDto(form);
@@ -109,7 +112,7 @@ class NoteFormMapperTest {
   @DisplayName("toDto_withEmptyNote_shouldMapEmptyString")
   void toDto_withEmptyNote_shouldMapEmptyString() {
     // Arrange
-    var form = new NoteForm(UUID.randomUUID(), "");
+    var form = new NoteForm(UUID.randomUUID(), "", 0L);
 
     // Act
     var dto = mapper.toDto(form);
@@ -123,7 +126,7 @@ class NoteFormMapperTest {
   @DisplayName("toDto_withNullNote_shouldMapNull")
   void toDto_withNullNote_shouldMapNull() {
     // Arrange
-    var form = new NoteForm(UUID.randomUUID(), null);
+    var form = new NoteForm(UUID.randomUUID(), null, 0L);
 
     // Act
     var dto = mapper.toDto(form);
@@ -0,0 +1,63 @@
+package ch.hftm.relationaldatabases.transferdemo.mappers;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the entity mapping done for every note that is read or written, run with {@code mvn test -Pjmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteMapperBenchmark {
+  private NoteMapper mapper;
+  private NoteEntity entity;
+  private Note note;
+
+  @Setup
+  public void setUp() {
+    mapper = Mappers.getMapper(NoteMapper.class);
+    var now = Instant.now();
+    entity = NoteEntity.builder()
+        .uuid(UUID.randomUUID())
+        .note("Benchmark note ".repeat(10))
+        .createdAt(now)
+        .updatedAt(now)
+        .build();
+    note = mapper.toDto(entity);
+  }
+
+  @Benchmark
+  public Note toDto() {
+    return mapper.toDto(entity);
+  }
+
+  @Benchmark
+  public NoteEntity toEntity() {
+    return mapper.toEntity(note);
+  }
+
+  @Benchmark
+  public NoteEntity updateEntity() {
+    mapper.updateEntity(note, entity);
+    return entity;
+  }
+}
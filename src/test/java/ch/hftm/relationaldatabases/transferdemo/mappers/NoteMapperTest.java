@@ -36,6 +36,7 @@ class NoteMapperTest {
         .note(noteText)
         .createdAt(createdAt)
         .updatedAt(updatedAt)
+        .version(3L)
         .build();
 
     // Act
@@ -47,6 +48,7 @@ class NoteMapperTest {
     assertThat(dto.getNote()).isEqualTo(noteText);
     assertThat(dto.getCreatedAt()).isEqualTo(createdAt);
     assertThat(dto.getUpdatedAt()).isEqualTo(updatedAt);
+    assertThat(dto.getVersion()).isEqualTo(3L);
   }
 
   @Test
@@ -86,6 +88,7 @@ class NoteMapperTest {
         .note(noteText)
         .createdAt(createdAt)
         .updatedAt(updatedAt)
+        .version(3L)
         .build();
 
     // Act
@@ -98,6 +101,8 @@ class NoteMapperTest {
     // Timestamps should be ignored in entity mapping (managed by JPA)
     assertThat(entity.getCreatedAt()).isNull();
     assertThat(entity.getUpdatedAt()).isNull();
+    // the version of a new entity is set by Hibernate
+    assertThat(entity.getVersion()).isNull();
   }
 
   @Test
@@ -135,6 +140,7 @@ class NoteMapperTest {
         .note(originalNote)
         .createdAt(originalCreatedAt)
         .updatedAt(originalUpdatedAt)
+        .version(2L)
         .build();
 
     var updatedNoteText = "Updated note content";
@@ -143,6 +149,7 @@ class NoteMapperTest {
         .note(updatedNoteText)
         .createdAt(Instant.now()) // Should be ignored
         .updatedAt(Instant.now()) // Should be ignored
+        .version(7L) // Should be ignored
         .build();
 
     // Act
@@ -153,6 +160,7 @@ class NoteMapperTest {
     assertThat(existingEntity.getNote()).isEqualTo(updatedNoteText); // Updated
     assertThat(existingEntity.getCreatedAt()).isEqualTo(originalCreatedAt); // Unchanged
     assertThat(existingEntity.getUpdatedAt()).isEqualTo(originalUpdatedAt); // Unchanged (JPA manages this)
+    assertThat(existingEntity.getVersion()).isEqualTo(2L); // Unchanged (JPA manages this)
   }
 
   @Test
@@ -179,7 +187,7 @@ class NoteMapperTest {
   @DisplayName("toDto_withNullEntity_shouldReturnNull")
   void toDto_withNullEntity_shouldReturnNull() {
     // Act
-    var result = mapper.toDto(null);
+    var result = mapper.toDto((NoteEntity) null);
 
     // Assert
     assertThat(result).isNull();
@@ -0,0 +1,61 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LoggingNoteEventSink Integration Tests")
+// the build slows the relay down for all other tests, see the surefire configuration
+@TestPropertySource(properties = "notes.outbox.poll-interval=1s")
+@DirtiesContext
+class LoggingNoteEventSinkTest extends AbstractIntegrationTest {
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  @Autowired
+  private NoteOutboxRelay relay;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("relay_withDefaultConfig_shouldDrainOutbox")
+  void relay_withDefaultConfig_shouldDrainOutbox() throws InterruptedException {
+    // Arrange
+    noteService.upsert(Note.builder().note("Logged").build());
+
+    // Act
+    var deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (outboxSize() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+
+    // Assert
+    assertThat(relay.isRunning()).isTrue();
+    assertThat(outboxSize()).isZero();
+  }
+
+  private long outboxSize() {
+    return jdbcTemplate.queryForObject("SELECT count(*) FROM outbox", Long.class);
+  }
+}
@@ -0,0 +1,60 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NdjsonFileNoteEventSink Tests")
+class NdjsonFileNoteEventSinkTest {
+
+  @TempDir
+  private Path directory;
+
+  @Test
+  @DisplayName("publish_calledTwice_shouldAppendOneLinePerEvent")
+  void publish_calledTwice_shouldAppendOneLinePerEvent() throws IOException {
+    // Arrange
+    var file = directory.resolve("events.ndjson");
+    var properties = new NoteProperties();
+    properties.getOutbox().setFile(file.toString());
+    var objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    var sink = new NdjsonFileNoteEventSink(properties, objectMapper);
+    var uuid = UUID.fromString("0190a4b2-3c4d-7e5f-8a6b-7c8d9e0f1a2b");
+
+    // Act
+    sink.publish(List.of(event(1, uuid, "note.created", "{\"note\": \"First\"}")));
+    sink.publish(List.of(event(2, uuid, "note.deleted", "{\"uuid\": \"" + uuid + "\"}")));
+
+    // Assert
+    assertThat(Files.readAllLines(file)).containsExactly(
+        "{\"id\":1,\"uuid\":\"" + uuid + "\",\"type\":\"note.created\",\"payload\":{\"note\": \"First\"},"
+            + "\"createdAt\":\"2025-01-01T12:00:00Z\"}",
+        "{\"id\":2,\"uuid\":\"" + uuid + "\",\"type\":\"note.deleted\",\"payload\":{\"uuid\": \"" + uuid + "\"},"
+            + "\"createdAt\":\"2025-01-01T12:00:00Z\"}");
+  }
+
+  private static NoteEvent event(long id, UUID uuid, String type, String payload) {
+    return NoteEvent.builder()
+        .id(id)
+        .uuid(uuid)
+        .type(type)
+        .payload(payload)
+        .createdAt(Instant.parse("2025-01-01T12:00:00Z"))
+        .build();
+  }
+}
@@ -0,0 +1,212 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NoteArchiver Integration Tests")
+// the tests archive themselves, the scheduled archiver never gets to run, nor does the relay emptying the outbox
+@TestPropertySource(properties = {"notes.archive.after=1h", "notes.archive.interval=1h",
+    "notes.outbox.poll-interval=1h"})
+class NoteArchiverTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NoteArchiver archiver;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteImportService importService;
+
+  @Autowired
+  private NoteExportService exportService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    jdbcTemplate.update("DELETE FROM notes_archive");
+    jdbcTemplate.update("DELETE FROM outbox");
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("archiveBatch_withNoteNotUpdatedWithinWindow_shouldMoveItWithoutChangeEvent")
+  void archiveBatch_withNoteNotUpdatedWithinWindow_shouldMoveItWithoutChangeEvent() {
+    // Arrange
+    var cold = createNoteUpdatedHoursAgo("Cold note", 2);
+    var hot = noteService.upsert(Note.builder().note("Hot note").build());
+    var version = noteService.getVersion();
+
+    // Act
+    var archived = archiver.archiveBatch();
+
+    // Assert
+    assertThat(archived).isEqualTo(1);
+    assertThat(noteService.getVersion()).isNotEqualTo(version);
+    assertThat(repository.findAll()).extracting(NoteEntity::getUuid).containsExactly(hot.getUuid());
+    assertThat(noteService.findById(cold.getUuid())).get().extracting(Note::getNote).isEqualTo("Cold note");
+    assertThat(outboxEventTypes()).containsExactly("note.created", "note.created");
+  }
+
+  @Test
+  @DisplayName("reads_withArchivedNote_shouldListSearchAndExportIt")
+  void reads_withArchivedNote_shouldListSearchAndExportIt() throws IOException {
+    // Arrange
+    var cold = createNoteUpdatedHoursAgo("Archived quarterly report", 2);
+    var hot = noteService.upsert(Note.builder().note("Hot quarterly plan").build());
+    archiver.archiveBatch();
+    var output = new ByteArrayOutputStream();
+
+    // Act
+    var page = noteService.getPage(null, null);
+    var all = noteService.getAll();
+    var searched = noteService.search("report", null);
+    var containing = noteService.findContaining("quarterly");
+    var similar = noteService.findSimilar("quartely");
+    exportService.export(NoteFileFormat.NDJSON, output);
+
+    // Assert
+    assertThat(archiver.findById(cold.getUuid())).isPresent();
+    assertThat(page.getNotes()).extracting(NotePreview::getUuid).containsExactly(hot.getUuid(), cold.getUuid());
+    assertThat(all).extracting(Note::getUuid).containsExactlyInAnyOrder(hot.getUuid(), cold.getUuid());
+    assertThat(searched.getNotes()).extracting(NotePreview::getUuid).containsExactly(cold.getUuid());
+    assertThat(containing.getNotes()).extracting(NotePreview::getUuid)
+        .containsExactly(hot.getUuid(), cold.getUuid());
+    assertThat(similar.getNotes()).extracting(NotePreview::getUuid)
+        .containsExactlyInAnyOrder(hot.getUuid(), cold.getUuid());
+    assertThat(output.toString(StandardCharsets.UTF_8)).contains("Archived quarterly report", "Hot quarterly plan");
+  }
+
+  @Test
+  @DisplayName("upsert_withArchivedNote_shouldRestoreAndEditIt")
+  void upsert_withArchivedNote_shouldRestoreAndEditIt() {
+    // Arrange
+    var cold = createNoteUpdatedHoursAgo("Cold note", 2);
+    archiver.archiveBatch();
+
+    // Act
+    var edited = noteService.upsert(Note.builder().uuid(cold.getUuid()).note("Warm again").build());
+
+    // Assert
+    assertThat(edited.getVersion()).isEqualTo(1);
+    assertThat(edited.getCreatedAt()).isEqualTo(cold.getCreatedAt());
+    assertThat(repository.findById(cold.getUuid())).get().extracting(NoteEntity::getNote)
+        .isEqualTo("Warm again");
+    assertThat(archiver.findById(cold.getUuid())).isEmpty();
+    assertThat(outboxEventTypes()).containsExactly("note.created", "note.updated");
+  }
+
+  @Test
+  @DisplayName("deleteById_withArchivedNote_shouldDeleteItAndReleaseUuid")
+  void deleteById_withArchivedNote_shouldDeleteItAndReleaseUuid() {
+    // Arrange
+    var cold = createNoteUpdatedHoursAgo("Cold note", 2);
+    archiver.archiveBatch();
+
+    // Act
+    noteService.deleteById(cold.getUuid());
+
+    // Assert
+    assertThat(noteService.findById(cold.getUuid())).isEmpty();
+    assertThat(outboxEventTypes()).containsExactly("note.created", "note.deleted");
+    var recreated = noteService.upsert(Note.builder().uuid(cold.getUuid()).note("Recreated").build());
+    assertThat(recreated.getVersion()).isZero();
+  }
+
+  @Test
+  @DisplayName("importNotes_withArchivedNote_shouldRestoreAndUpdateIt")
+  void importNotes_withArchivedNote_shouldRestoreAndUpdateIt() throws IOException {
+    // Arrange
+    var cold = createNoteUpdatedHoursAgo("Cold note", 2);
+    archiver.archiveBatch();
+    var csv = "uuid,note\n" + cold.getUuid() + ",Imported text\n";
+
+    // Act
+    var result = importService.importNotes(NoteFileFormat.CSV,
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+    // Assert
+    assertThat(result.getInserted()).isZero();
+    assertThat(result.getUpdated()).isEqualTo(1);
+    assertThat(archiver.findById(cold.getUuid())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("replaceText_withArchivedNotes_shouldRestoreAndChangeOnlyMatchingOnes")
+  void replaceText_withArchivedNotes_shouldRestoreAndChangeOnlyMatchingOnes() {
+    // Arrange
+    var matching = createNoteUpdatedHoursAgo("Cold note'); DROP TABLE notes; --", 2);
+    var other = createNoteUpdatedHoursAgo("Other cold note", 2);
+    archiver.archiveBatch();
+
+    // Act
+    var replaced = noteService.replaceText("'); DROP", "dropped");
+
+    // Assert
+    assertThat(replaced).isEqualTo(1);
+    assertThat(repository.findById(matching.getUuid())).get().extracting(NoteEntity::getNote)
+        .isEqualTo("Cold notedropped TABLE notes; --");
+    assertThat(archiver.findById(other.getUuid())).isPresent();
+  }
+
+  @Test
+  @DisplayName("restoreContaining_withMoreMatchesThanLimit_shouldRestoreInKeysetChunks")
+  void restoreContaining_withMoreMatchesThanLimit_shouldRestoreInKeysetChunks() {
+    // Arrange
+    var matching = new ArrayList<UUID>();
+    for (var i = 0; i < 3; i++) {
+      matching.add(createNoteUpdatedHoursAgo("Cold match " + i, 2).getUuid());
+    }
+    var other = createNoteUpdatedHoursAgo("Other cold note", 2);
+    archiver.archiveBatch();
+    matching.sort(null);
+
+    // Act
+    var first = archiver.restoreContaining("match", new UUID(0, 0), 2);
+    var second = archiver.restoreContaining("match", first.getLast(), 2);
+
+    // Assert
+    assertThat(first).containsExactly(matching.get(0), matching.get(1));
+    assertThat(second).containsExactly(matching.get(2));
+    assertThat(repository.findAllById(matching)).hasSize(3);
+    assertThat(archiver.findById(other.getUuid())).isPresent();
+  }
+
+  private Note createNoteUpdatedHoursAgo(String text, int hours) {
+    var note = noteService.upsert(Note.builder().note(text).build());
+    jdbcTemplate.update("UPDATE notes SET updated_at = updated_at - make_interval(hours => ?) WHERE uuid = ?", hours,
+        note.getUuid());
+    return note;
+  }
+
+  private List<String> outboxEventTypes() {
+    return jdbcTemplate.queryForList("SELECT event_type FROM outbox ORDER BY id", String.class);
+  }
+}
@@ -0,0 +1,101 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@AutoConfigureMockMvc
+@DisplayName("NoteChangeFeed Integration Tests")
+// the first heartbeat shows that the listener is connected
+@TestPropertySource(properties = "notes.change-feed.heartbeat-interval=100ms")
+class NoteChangeFeedTest extends AbstractIntegrationTest {
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("stream_afterCreateAndDelete_shouldSendEachChangeWithUuid")
+  void stream_afterCreateAndDelete_shouldSendEachChangeWithUuid() throws Exception {
+    // Arrange
+    var stream = openStream();
+
+    // Act
+    var note = noteService.upsert(Note.builder().note("Streamed").build());
+    noteService.deleteById(note.getUuid());
+
+    // Assert
+    var deleted = "data:{\"op\": \"DELETE\", \"uuid\": \"" + note.getUuid() + "\"}";
+    var content = awaitContent(stream, deleted);
+    assertThat(content).contains("data:{\"op\": \"INSERT\", \"uuid\": \"" + note.getUuid() + "\"}\n\n");
+    assertThat(content.indexOf("INSERT")).isLessThan(content.indexOf("DELETE"));
+    // the upsert's UPDATE trigger saw no updated rows
+    assertThat(content).doesNotContain("UPDATE");
+  }
+
+  @Test
+  @DisplayName("stream_afterStatementChangingManyNotes_shouldSendOneChangeWithoutUuid")
+  void stream_afterStatementChangingManyNotes_shouldSendOneChangeWithoutUuid() throws Exception {
+    // Arrange
+    var stream = openStream();
+
+    // Act
+    jdbcTemplate.update("INSERT INTO notes (uuid, note) SELECT uuid_generate_v7(), 'Bulk ' || i "
+        + "FROM generate_series(1, 150) AS i");
+
+    // Assert
+    var content = awaitContent(stream, "data:{\"op\": \"INSERT\"}\n\n");
+    assertThat(content).doesNotContain("\"uuid\"");
+  }
+
+  private MvcResult openStream() throws Exception {
+    var stream = mockMvc.perform(get("/notes/stream"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    awaitContent(stream, ":heartbeat");
+    return stream;
+  }
+
+  // the response stays open, its content grows with every event sent so far
+  private static String awaitContent(MvcResult stream, String expected)
+      throws UnsupportedEncodingException, InterruptedException {
+    var deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    var content = stream.getResponse().getContentAsString();
+    while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      content = stream.getResponse().getContentAsString();
+    }
+    assertThat(content).contains(expected);
+    return content;
+  }
+}
@@ -0,0 +1,132 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.ReadableNoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import ch.hftm.relationaldatabases.transferdemo.mappers.NoteMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NoteExportService Tests")
+class NoteExportServiceTest {
+
+  @Mock
+  private NoteRepository repository;
+
+  @Mock
+  private NoteMapper mapper;
+
+  @Mock
+  private EntityManager entityManager;
+
+  private NoteExportService exportService;
+
+  private List<ReadableNoteEntity> entities;
+
+  @BeforeEach
+  void setUp() {
+    var objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    exportService = new NoteExportService(repository, mapper, entityManager, objectMapper);
+
+    var timestamp = Instant.parse("2025-01-01T12:00:00Z");
+    entities = List.of(
+        ReadableNoteEntity.builder().uuid(UUID.randomUUID()).note("Plain note").createdAt(timestamp).updatedAt(timestamp)
+            .build(),
+        ReadableNoteEntity.builder().uuid(UUID.randomUUID()).note("Note with \"quotes\", commas\nand lines")
+            .createdAt(timestamp).updatedAt(timestamp).build()
+    );
+
+    lenient().when(repository.streamAllNotes()).thenReturn(entities.stream());
+    for (var entity : entities) {
+      lenient().when(mapper.toDto(entity)).thenReturn(Note.builder()
+          .uuid(entity.getUuid())
+          .note(entity.getNote())
+          .createdAt(entity.getCreatedAt())
+          .updatedAt(entity.getUpdatedAt())
+          .build());
+    }
+  }
+
+  @Test
+  @DisplayName("export_asNdjson_shouldWriteOneJsonObjectPerLine")
+  void export_asNdjson_shouldWriteOneJsonObjectPerLine() throws Exception {
+    // Arrange
+    var output = new ByteArrayOutputStream();
+
+    // Act
+    exportService.export(NoteFileFormat.NDJSON, output);
+
+    // Assert
+    var lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[0]).isEqualTo("{\"uuid\":\"" + entities.get(0).getUuid()
+        + "\",\"note\":\"Plain note\",\"createdAt\":\"2025-01-01T12:00:00Z\",\"updatedAt\":\"2025-01-01T12:00:00Z\"}");
+    assertThat(lines[1]).contains("\"note\":\"Note with \\\"quotes\\\", commas\\nand lines\"");
+  }
+
+  @Test
+  @DisplayName("export_asCsv_shouldWriteHeaderAndEscapeFields")
+  void export_asCsv_shouldWriteHeaderAndEscapeFields() throws Exception {
+    // Arrange
+    var output = new ByteArrayOutputStream();
+
+    // Act
+    exportService.export(NoteFileFormat.CSV, output);
+
+    // Assert
+    assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(
+        "uuid,note,created_at,updated_at\n"
+            + entities.get(0).getUuid() + ",Plain note,2025-01-01T12:00:00Z,2025-01-01T12:00:00Z\n"
+            + entities.get(1).getUuid() + ",\"Note with \"\"quotes\"\", commas\nand lines\","
+            + "2025-01-01T12:00:00Z,2025-01-01T12:00:00Z\n");
+  }
+
+  @Test
+  @DisplayName("export_shouldDetachEveryEntityAfterWritingIt")
+  void export_shouldDetachEveryEntityAfterWritingIt() throws Exception {
+    // Act
+    exportService.export(NoteFileFormat.NDJSON, new ByteArrayOutputStream());
+
+    // Assert
+    var inOrder = inOrder(mapper, entityManager);
+    for (var entity : entities) {
+      inOrder.verify(mapper).toDto(entity);
+      inOrder.verify(entityManager).detach(entity);
+    }
+  }
+
+  @Test
+  @DisplayName("export_shouldCloseTheUnderlyingStream")
+  void export_shouldCloseTheUnderlyingStream() throws Exception {
+    // Arrange
+    var closed = new boolean[1];
+    when(repository.streamAllNotes()).thenReturn(Stream.<ReadableNoteEntity>empty().onClose(() -> closed[0] = true));
+
+    // Act
+    exportService.export(NoteFileFormat.NDJSON, new ByteArrayOutputStream());
+
+    // Assert
+    assertThat(closed[0]).isTrue();
+  }
+}
@@ -0,0 +1,45 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NoteFileFormat Tests")
+class NoteFileFormatTest {
+
+  @Test
+  @DisplayName("fromExtension_shouldMatchCaseInsensitively")
+  void fromExtension_shouldMatchCaseInsensitively() {
+    assertThat(NoteFileFormat.fromExtension("CSV")).contains(NoteFileFormat.CSV);
+    assertThat(NoteFileFormat.fromExtension("ndjson")).contains(NoteFileFormat.NDJSON);
+    assertThat(NoteFileFormat.fromExtension("xml")).isEmpty();
+  }
+
+  @Test
+  @DisplayName("fromFileName_shouldUseLastExtension")
+  void fromFileName_shouldUseLastExtension() {
+    assertThat(NoteFileFormat.fromFileName("notes.backup.csv")).contains(NoteFileFormat.CSV);
+    assertThat(NoteFileFormat.fromFileName("notes")).isEmpty();
+    assertThat(NoteFileFormat.fromFileName(null)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("fromMediaType_shouldIgnoreParameters")
+  void fromMediaType_shouldIgnoreParameters() {
+    assertThat(NoteFileFormat.fromMediaType(MediaType.parseMediaType("text/csv;charset=UTF-8")))
+        .contains(NoteFileFormat.CSV);
+    assertThat(NoteFileFormat.fromMediaType(MediaType.APPLICATION_JSON)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("csvField_shouldQuoteOnlyWhenNeeded")
+  void csvField_shouldQuoteOnlyWhenNeeded() {
+    assertThat(NoteFileFormat.csvField("plain")).isEqualTo("plain");
+    assertThat(NoteFileFormat.csvField("")).isEqualTo("\"\"");
+    assertThat(NoteFileFormat.csvField("a,b")).isEqualTo("\"a,b\"");
+    assertThat(NoteFileFormat.csvField("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+    assertThat(NoteFileFormat.csvField("two\nlines")).isEqualTo("\"two\nlines\"");
+  }
+}
@@ -0,0 +1,220 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("NoteImportService Integration Tests")
+class NoteImportServiceTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NoteImportService importService;
+
+  @Autowired
+  private NoteExportService exportService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    // imports commit, so the table has to be cleaned up explicitly
+    repository.deleteAll();
+  }
+
+  @Test
+  @DisplayName("importNotes_withNdjsonWithoutUuids_shouldInsertNewNotes")
+  void importNotes_withNdjsonWithoutUuids_shouldInsertNewNotes() throws Exception {
+    // Arrange
+    var ndjson = """
+        {"note":"First imported note"}
+        {"note":"Second, with \\"quotes\\"\\nand a line break"}
+
+        {"uuid":null,"note":""}
+        """;
+
+    // Act
+    var result = importService.importNotes(NoteFileFormat.NDJSON, stream(ndjson));
+
+    // Assert
+    assertThat(result.getReceived()).isEqualTo(3);
+    assertThat(result.getInserted()).isEqualTo(3);
+    assertThat(result.getUpdated()).isZero();
+    assertThat(repository.findAll()).extracting(NoteEntity::getNote)
+        .containsExactlyInAnyOrder("First imported note", "Second, with \"quotes\"\nand a line break", "");
+    assertThat(repository.findAll()).allMatch(entity -> entity.getCreatedAt() != null);
+  }
+
+  @Test
+  @DisplayName("importNotes_withCsv_shouldUpdateExistingAndInsertUnknownUuids")
+  void importNotes_withCsv_shouldUpdateExistingAndInsertUnknownUuids() throws Exception {
+    // Arrange
+    var existing = repository.save(NoteEntity.builder().note("Original").build());
+    var unknownUuid = UUID.randomUUID();
+    var csv = "uuid,note,created_at,updated_at\n"
+        + existing.getUuid() + ",Updated,2000-01-01T00:00:00Z,2000-01-01T00:00:00Z\n"
+        + unknownUuid + ",\"New, quoted\",,\n";
+
+    // Act
+    var result = importService.importNotes(NoteFileFormat.CSV, stream(csv));
+
+    // Assert
+    assertThat(result.getReceived()).isEqualTo(2);
+    assertThat(result.getInserted()).isEqualTo(1);
+    assertThat(result.getUpdated()).isEqualTo(1);
+
+    var updated = repository.findById(existing.getUuid()).orElseThrow();
+    assertThat(updated.getNote()).isEqualTo("Updated");
+    assertThat(updated.getCreatedAt()).isCloseTo(existing.getCreatedAt(), within(1, ChronoUnit.MILLIS));
+    assertThat(updated.getUpdatedAt()).isAfter(existing.getUpdatedAt());
+    assertThat(updated.getVersion()).isEqualTo(existing.getVersion() + 1);
+    assertThat(repository.findById(unknownUuid)).get().extracting(NoteEntity::getNote).isEqualTo("New, quoted");
+  }
+
+  @Test
+  @DisplayName("importNotes_withDeletedNote_shouldCountRecreationAsInsert")
+  void importNotes_withDeletedNote_shouldCountRecreationAsInsert() throws Exception {
+    // Arrange
+    var existing = repository.save(NoteEntity.builder().note("Existing").build());
+    var deleted = repository.save(NoteEntity.builder().note("Deleted").build());
+    repository.deleteById(deleted.getUuid());
+    var csv = "uuid,note\n" + existing.getUuid() + ",Changed\n" + deleted.getUuid() + ",Recreated\n,New\n";
+
+    // Act
+    var result = importService.importNotes(NoteFileFormat.CSV, stream(csv));
+
+    // Assert
+    assertThat(result.getInserted()).isEqualTo(2);
+    assertThat(result.getUpdated()).isEqualTo(1);
+    assertThat(repository.findById(deleted.getUuid())).get().extracting(NoteEntity::getNote).isEqualTo("Recreated");
+  }
+
+  @Test
+  @DisplayName("importNotes_withCachedNote_shouldEvictStaleEntry")
+  void importNotes_withCachedNote_shouldEvictStaleEntry() throws Exception {
+    // Arrange
+    var existing = repository.save(NoteEntity.builder().note("Cached").build());
+    repository.findById(existing.getUuid());
+    var ndjson = "{\"uuid\":\"" + existing.getUuid() + "\",\"note\":\"Imported\"}\n";
+
+    // Act
+    importService.importNotes(NoteFileFormat.NDJSON, stream(ndjson));
+
+    // Assert
+    assertThat(repository.findById(existing.getUuid())).get().extracting(NoteEntity::getNote).isEqualTo("Imported");
+  }
+
+  @Test
+  @DisplayName("importNotes_withDuplicateUuids_shouldKeepLastOccurrence")
+  void importNotes_withDuplicateUuids_shouldKeepLastOccurrence() throws Exception {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var ndjson = "{\"uuid\":\"" + uuid + "\",\"note\":\"first\"}\n{\"uuid\":\"" + uuid + "\",\"note\":\"last\"}\n";
+
+    // Act
+    var result = importService.importNotes(NoteFileFormat.NDJSON, stream(ndjson));
+
+    // Assert
+    assertThat(result.getReceived()).isEqualTo(2);
+    assertThat(result.getInserted()).isEqualTo(1);
+    assertThat(repository.findById(uuid)).get().extracting(NoteEntity::getNote).isEqualTo("last");
+  }
+
+  @Test
+  @DisplayName("importNotes_withOwnExport_shouldNotChangeAnything")
+  void importNotes_withOwnExport_shouldNotChangeAnything() throws Exception {
+    // Arrange
+    repository.save(NoteEntity.builder().note("Kept, as is").build());
+    repository.save(NoteEntity.builder().note("").build());
+    var export = new ByteArrayOutputStream();
+    exportService.export(NoteFileFormat.CSV, export);
+
+    // Act
+    var result = importService.importNotes(NoteFileFormat.CSV, new ByteArrayInputStream(export.toByteArray()));
+
+    // Assert
+    assertThat(result.getReceived()).isEqualTo(2);
+    assertThat(result.getInserted()).isZero();
+    assertThat(result.getUpdated()).isZero();
+  }
+
+  @Test
+  @DisplayName("importNotes_withUnknownCsvColumn_shouldRejectUploadWithoutChanges")
+  void importNotes_withUnknownCsvColumn_shouldRejectUploadWithoutChanges() {
+    // Arrange
+    var csv = "uuid,text\n,Some text\n";
+
+    // Act & Assert
+    assertThatThrownBy(() -> importService.importNotes(NoteFileFormat.CSV, stream(csv)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Invalid CSV header");
+    assertThat(repository.count()).isZero();
+  }
+
+  @Test
+  @DisplayName("importNotes_withMalformedNdjson_shouldRollBackWholeImport")
+  void importNotes_withMalformedNdjson_shouldRollBackWholeImport() {
+    // Arrange
+    var ndjson = "{\"note\":\"valid\"}\n{\"note\": broken\n";
+
+    // Act & Assert
+    assertThatThrownBy(() -> importService.importNotes(NoteFileFormat.NDJSON, stream(ndjson)))
+        .isInstanceOf(IOException.class);
+    assertThat(repository.count()).isZero();
+
+    // connection returned to the pool must still be usable
+    assertThat(repository.findAll()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("importNotes_withNdjsonRecordWithoutNote_shouldRejectUploadNamingLine")
+  void importNotes_withNdjsonRecordWithoutNote_shouldRejectUploadNamingLine() {
+    // Arrange
+    var ndjson = "{\"note\":\"valid\"}\n{\"uuid\":\"" + UUID.randomUUID() + "\"}\n";
+
+    // Act & Assert
+    assertThatThrownBy(() -> importService.importNotes(NoteFileFormat.NDJSON, stream(ndjson)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Line 2: note is missing");
+    assertThat(repository.count()).isZero();
+  }
+
+  @Test
+  @DisplayName("importNotes_withInvalidCsvRecords_shouldRejectUpload")
+  void importNotes_withInvalidCsvRecords_shouldRejectUpload() {
+    // Arrange
+    var withoutNote = "uuid,note\n,valid\n" + UUID.randomUUID() + ",\n";
+    var invalidUuid = "uuid,note\nnot-a-uuid,text\n";
+
+    // Act & Assert
+    assertThatThrownBy(() -> importService.importNotes(NoteFileFormat.CSV, stream(withoutNote)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Record 2: note is missing");
+    assertThatThrownBy(() -> importService.importNotes(NoteFileFormat.CSV, stream(invalidUuid)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("not-a-uuid");
+    assertThat(repository.count()).isZero();
+  }
+
+  private static InputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
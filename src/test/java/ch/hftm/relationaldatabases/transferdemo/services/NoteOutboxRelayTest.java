@@ -0,0 +1,176 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteEvent;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("NoteOutboxRelay Integration Tests")
+// the tests relay themselves, the scheduled relay never gets to run
+@TestPropertySource(properties = "notes.outbox.poll-interval=1h")
+@Import(NoteOutboxRelayTest.SinkConfig.class)
+class NoteOutboxRelayTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NoteOutboxRelay relay;
+
+  @Autowired
+  private InMemoryNoteEventSink sink;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    noteService.evictAllFromCache();
+    jdbcTemplate.update("DELETE FROM outbox");
+    sink.events.clear();
+    sink.failNext = false;
+  }
+
+  @Test
+  @DisplayName("drain_afterCreateUpdateAndDelete_shouldPublishEventsInOrderAndEmptyOutbox")
+  void drain_afterCreateUpdateAndDelete_shouldPublishEventsInOrderAndEmptyOutbox() {
+    // Arrange
+    var created = noteService.upsert(Note.builder().note("Relayed").build());
+    noteService.upsert(Note.builder().uuid(created.getUuid()).note("Relayed and edited").build());
+    noteService.deleteById(created.getUuid());
+
+    // Act
+    relay.drain();
+
+    // Assert
+    assertThat(sink.events).extracting(NoteEvent::getType)
+        .containsExactly("note.created", "note.updated", "note.deleted");
+    assertThat(sink.events).extracting(NoteEvent::getUuid).containsOnly(created.getUuid());
+    assertThat(sink.events.get(1).getPayload())
+        .contains("\"note\": \"Relayed and edited\"", "\"version\": 1")
+        .doesNotContain("search_vector");
+    assertThat(outboxSize()).isZero();
+  }
+
+  @Test
+  @DisplayName("drain_afterUpsertOfUnchangedText_shouldNotPublishUpdate")
+  void drain_afterUpsertOfUnchangedText_shouldNotPublishUpdate() {
+    // Arrange
+    var created = noteService.upsert(Note.builder().note("Unchanged").build());
+    noteService.upsert(Note.builder().uuid(created.getUuid()).note("Unchanged").build());
+
+    // Act
+    relay.drain();
+
+    // Assert
+    assertThat(sink.events).extracting(NoteEvent::getType).containsExactly("note.created");
+  }
+
+  @Test
+  @DisplayName("relayBatch_whenSinkFails_shouldKeepEventsForNextAttempt")
+  void relayBatch_whenSinkFails_shouldKeepEventsForNextAttempt() {
+    // Arrange
+    noteService.upsert(Note.builder().note("Retried").build());
+    sink.failNext = true;
+
+    // Act
+    assertThatThrownBy(() -> relay.relayBatch()).isInstanceOf(IllegalStateException.class);
+    var relayed = relay.relayBatch();
+
+    // Assert
+    assertThat(relayed).isEqualTo(1);
+    assertThat(sink.events).extracting(NoteEvent::getType).containsExactly("note.created");
+    assertThat(outboxSize()).isZero();
+  }
+
+  @Test
+  @DisplayName("relayBatch_withEventsClaimedByAnotherRelay_shouldSkipThem")
+  void relayBatch_withEventsClaimedByAnotherRelay_shouldSkipThem() throws Exception {
+    // Arrange
+    for (var i = 0; i < 3; i++) {
+      noteService.upsert(Note.builder().note("Note " + i).build());
+    }
+    var claimed = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try (var executor = Executors.newSingleThreadExecutor()) {
+      var otherRelay = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+        jdbcTemplate.queryForList("SELECT id FROM outbox ORDER BY id LIMIT 1 FOR UPDATE");
+        claimed.countDown();
+        await(release);
+        status.setRollbackOnly();
+      }));
+      assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // Act
+      var relayed = relay.relayBatch();
+      release.countDown();
+      otherRelay.get(10, TimeUnit.SECONDS);
+
+      // Assert
+      assertThat(relayed).isEqualTo(2);
+      assertThat(outboxSize()).isEqualTo(1);
+    }
+  }
+
+  private long outboxSize() {
+    return jdbcTemplate.queryForObject("SELECT count(*) FROM outbox", Long.class);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  static class InMemoryNoteEventSink implements NoteEventSink {
+    final List<NoteEvent> events = new CopyOnWriteArrayList<>();
+    volatile boolean failNext;
+
+    @Override
+    public void publish(List<NoteEvent> batch) {
+      if (failNext) {
+        failNext = false;
+        throw new IllegalStateException("broker unavailable");
+      }
+      events.addAll(batch);
+    }
+  }
+
+  @TestConfiguration
+  static class SinkConfig {
+    @Bean
+    InMemoryNoteEventSink inMemoryNoteEventSink() {
+      return new InMemoryNoteEventSink();
+    }
+  }
+}
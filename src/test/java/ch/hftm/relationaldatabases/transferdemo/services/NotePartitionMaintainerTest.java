@@ -0,0 +1,51 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NotePartitionMaintainer Integration Tests")
+class NotePartitionMaintainerTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NotePartitionMaintainer maintainer;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("createPartitions_withLastPartitionMissing_shouldCreateItAgain")
+  void createPartitions_withLastPartitionMissing_shouldCreateItAgain() {
+    // Arrange - three months ahead by default, the partition is empty
+    var last = "notes_" + currentMonth().plusMonths(3).format(DateTimeFormatter.ofPattern("yyyy_MM"));
+    jdbcTemplate.execute("DROP TABLE " + last);
+
+    // Act
+    var created = maintainer.createPartitions();
+
+    // Assert
+    assertThat(created).isEqualTo(1);
+    assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, last)).isEqualTo(last);
+  }
+
+  @Test
+  @DisplayName("createPartitions_withAllPartitionsPresent_shouldCreateNone")
+  void createPartitions_withAllPartitionsPresent_shouldCreateNone() {
+    // Act
+    var created = maintainer.createPartitions();
+
+    // Assert
+    assertThat(created).isZero();
+  }
+
+  private LocalDate currentMonth() {
+    return jdbcTemplate.queryForObject("SELECT CAST(date_trunc('month', localtimestamp) AS date)", LocalDate.class);
+  }
+}
@@ -0,0 +1,157 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCriteria;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NotePurger Integration Tests")
+// the tests purge themselves, the scheduled purger never gets to run, nor does the relay emptying the outbox
+@TestPropertySource(properties = {"notes.purge.interval=1h", "notes.purge.batch-size=2",
+    "notes.outbox.poll-interval=1h"})
+class NotePurgerTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NotePurger purger;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    jdbcTemplate.update("DELETE FROM notes");
+    jdbcTemplate.update("DELETE FROM outbox");
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("deleteById_withNote_shouldHideItAndPublishDeletion")
+  void deleteById_withNote_shouldHideItAndPublishDeletion() {
+    // Arrange
+    var note = noteService.upsert(Note.builder().note("Soon gone").build());
+
+    // Act
+    noteService.deleteById(note.getUuid());
+
+    // Assert
+    assertThat(noteService.findById(note.getUuid())).isEmpty();
+    assertThat(repository.findAll()).isEmpty();
+    assertThat(deletedCount()).isEqualTo(1);
+    assertThat(outboxEventTypes()).containsExactly("note.created", "note.deleted");
+  }
+
+  @Test
+  @DisplayName("upsert_withDeletedNote_shouldRecreateItWithNextVersion")
+  void upsert_withDeletedNote_shouldRecreateItWithNextVersion() {
+    // Arrange
+    var note = noteService.upsert(Note.builder().note("Deleted").build());
+    noteService.deleteById(note.getUuid());
+
+    // Act
+    var recreated = noteService.upsert(Note.builder().uuid(note.getUuid()).note("Recreated").build());
+
+    // Assert
+    assertThat(recreated.getNote()).isEqualTo("Recreated");
+    assertThat(recreated.getVersion()).isEqualTo(1);
+    assertThat(deletedCount()).isZero();
+    assertThat(outboxEventTypes()).containsExactly("note.created", "note.deleted", "note.created");
+  }
+
+  @Test
+  @DisplayName("upsertBuffered_withNoteChangedOrDeletedSinceBuffered_shouldKeepDirectChange")
+  void upsertBuffered_withNoteChangedOrDeletedSinceBuffered_shouldKeepDirectChange() {
+    // Arrange
+    var deleted = noteService.upsert(Note.builder().note("Deleted").build());
+    var changed = noteService.upsert(Note.builder().note("Changed").build());
+    var unchanged = noteService.upsert(Note.builder().note("Unchanged").build());
+    noteService.deleteById(deleted.getUuid());
+    noteService.upsert(Note.builder().uuid(changed.getUuid()).note("Changed directly").version(0L).build());
+
+    // Act
+    var written = noteService.upsertBuffered(List.of(buffered(deleted, "Edited before deletion"),
+        buffered(changed, "Edited before the direct change"), buffered(unchanged, "Edited")));
+
+    // Assert
+    assertThat(written).extracting(Note::getUuid).containsExactly(unchanged.getUuid());
+    assertThat(noteService.findById(deleted.getUuid())).isEmpty();
+    assertThat(noteService.findById(changed.getUuid())).get().extracting(Note::getNote).isEqualTo("Changed directly");
+    assertThat(noteService.findById(unchanged.getUuid())).get().extracting(Note::getNote).isEqualTo("Edited");
+    assertThat(deletedCount()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("purge_withDeletedNotesDue_shouldRemoveThemInBatchesAndReleaseUuids")
+  void purge_withDeletedNotesDue_shouldRemoveThemInBatchesAndReleaseUuids() {
+    // Arrange
+    var uuids = List.of(createDeletedNote(), createDeletedNote(), createDeletedNote());
+    jdbcTemplate.update("UPDATE notes SET deleted_at = deleted_at - INTERVAL '2 hours'");
+    var recent = createDeletedNote();
+
+    // Act
+    purger.purge();
+
+    // Assert
+    assertThat(jdbcTemplate.queryForList("SELECT uuid FROM notes", UUID.class)).containsExactly(recent);
+    assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM note_ids WHERE uuid = ANY(?)", Integer.class,
+        (Object) uuids.toArray(UUID[]::new))).isZero();
+    // purging publishes nothing, the notes were deleted for consumers already
+    assertThat(outboxEventTypes()).filteredOn("note.deleted"::equals).hasSize(4);
+  }
+
+  @Test
+  @DisplayName("deleteMatching_withCriteria_shouldDeleteMatchingNotesOnly")
+  void deleteMatching_withCriteria_shouldDeleteMatchingNotesOnly() {
+    // Arrange
+    var matching = noteService.upsert(Note.builder().note("Discount of 50% today").build());
+    var other = noteService.upsert(Note.builder().note("Discount of 50 francs").build());
+
+    // Act
+    var deleted = noteService.deleteMatching(NoteCriteria.builder()
+        .createdBefore(Instant.now().plusSeconds(60))
+        .containing("50%")
+        .build());
+
+    // Assert
+    assertThat(deleted).isEqualTo(1);
+    assertThat(noteService.findById(matching.getUuid())).isEmpty();
+    assertThat(noteService.findById(other.getUuid())).isPresent();
+  }
+
+  private UUID createDeletedNote() {
+    var note = noteService.upsert(Note.builder().note("Deleted").build());
+    noteService.deleteById(note.getUuid());
+    return note.getUuid();
+  }
+
+  private static Note buffered(Note stored, String text) {
+    return Note.builder().uuid(stored.getUuid()).note(text).version(stored.getVersion()).build();
+  }
+
+  private int deletedCount() {
+    return jdbcTemplate.queryForObject("SELECT count(*) FROM notes WHERE deleted_at IS NOT NULL", Integer.class);
+  }
+
+  private List<String> outboxEventTypes() {
+    return jdbcTemplate.queryForList("SELECT event_type FROM outbox ORDER BY id", String.class);
+  }
+}
@@ -0,0 +1,85 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.TransferdemoApplication;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * JMH benchmark of NoteService against the Testcontainers PostgreSQL, run with {@code mvn test -Pjmh}. Each trial
+ * starts the application without a web server and fills the table with {@code notes} rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteServiceBenchmark {
+  @Param({"100", "1000"})
+  private int notes;
+
+  private ConfigurableApplicationContext context;
+  private NoteService service;
+  private UUID existing;
+  private long counter;
+
+  @Setup
+  public void setUp() {
+    var postgres = AbstractIntegrationTest.postgreSQLContainer;
+    context = new SpringApplicationBuilder(TransferdemoApplication.class)
+        .web(WebApplicationType.NONE)
+        // arguments, default properties would lose against application.yaml
+        .run("--spring.datasource.url=" + postgres.getJdbcUrl(),
+            "--spring.datasource.username=" + postgres.getUsername(),
+            "--spring.datasource.password=" + postgres.getPassword());
+    service = context.getBean(NoteService.class);
+
+    context.getBean(NoteRepository.class).deleteAllInBatch();
+    service.evictAllFromCache();
+    List<Note> saved = service.upsertAll(IntStream.range(0, notes)
+        .mapToObj(i -> Note.builder().note("Benchmark note " + i).build())
+        .toList());
+    existing = saved.getFirst().getUuid();
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public Note upsertNew() {
+    return service.upsert(Note.builder().note("New note " + counter++).build());
+  }
+
+  @Benchmark
+  public Note upsertExisting() {
+    return service.upsert(Note.builder().uuid(existing).note("Updated note " + counter++).build());
+  }
+
+  @Benchmark
+  public List<Note> getAll() {
+    return service.getAll();
+  }
+}
@@ -0,0 +1,105 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NoteService Bulk Operation Integration Tests")
+// small chunks, so every test spans several of them
+@TestPropertySource(properties = {"notes.bulk-chunk-size=2", "notes.archive.after=1h", "notes.archive.interval=1h"})
+class NoteServiceBulkTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteArchiver archiver;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    jdbcTemplate.update("DELETE FROM notes");
+    jdbcTemplate.update("DELETE FROM notes_archive");
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("deleteAll_withHotAndArchivedNotes_shouldDeleteAllOfThem")
+  void deleteAll_withHotAndArchivedNotes_shouldDeleteAllOfThem() {
+    // Arrange
+    var archived = createNote("Archived");
+    jdbcTemplate.update("UPDATE notes SET updated_at = updated_at - INTERVAL '2 hours'");
+    archiver.archiveBatch();
+    var hot = IntStream.range(0, 4).mapToObj(i -> createNote("Hot " + i)).toList();
+    var kept = createNote("Kept");
+    var uuids = new ArrayList<>(hot);
+    uuids.add(archived);
+    uuids.add(UUID.randomUUID());
+
+    // Act
+    var deleted = noteService.deleteAll(uuids);
+
+    // Assert
+    assertThat(deleted).isEqualTo(5);
+    assertThat(noteService.findById(archived)).isEmpty();
+    assertThat(hot).allSatisfy(uuid -> assertThat(noteService.findById(uuid)).isEmpty());
+    assertThat(noteService.findById(kept)).isPresent();
+  }
+
+  @Test
+  @DisplayName("deleteOlderThan_withOldAndNewNotes_shouldDeleteOldOnes")
+  void deleteOlderThan_withOldAndNewNotes_shouldDeleteOldOnes() {
+    // Arrange
+    var old = IntStream.range(0, 5).mapToObj(i -> createNote("Old " + i)).toList();
+    jdbcTemplate.update("UPDATE notes SET created_at = created_at - INTERVAL '2 days'");
+    var recent = createNote("Recent");
+
+    // Act
+    var deleted = noteService.deleteOlderThan(Instant.now().minusSeconds(86_400));
+
+    // Assert
+    assertThat(deleted).isEqualTo(5);
+    assertThat(old).allSatisfy(uuid -> assertThat(noteService.findById(uuid)).isEmpty());
+    assertThat(noteService.findById(recent)).isPresent();
+  }
+
+  @Test
+  @DisplayName("replaceText_withTextInManyNotes_shouldReplaceItEverywhereOnce")
+  void replaceText_withTextInManyNotes_shouldReplaceItEverywhereOnce() {
+    // Arrange
+    var matching = IntStream.range(0, 5).mapToObj(i -> createNote("Meet at 10% past " + i)).toList();
+    var other = createNote("Meet at 10 past");
+
+    // Act
+    var replaced = noteService.replaceText("10%", "10% or 20%");
+
+    // Assert
+    assertThat(replaced).isEqualTo(5);
+    assertThat(matching).allSatisfy(uuid -> assertThat(noteService.findById(uuid)).get()
+        .satisfies(note -> {
+          assertThat(note.getNote()).startsWith("Meet at 10% or 20% past ");
+          assertThat(note.getVersion()).isEqualTo(1);
+        }));
+    assertThat(noteService.findById(other)).get().extracting(Note::getNote).isEqualTo("Meet at 10 past");
+  }
+
+  private UUID createNote(String text) {
+    return noteService.upsert(Note.builder().note(text).build()).getUuid();
+  }
+}
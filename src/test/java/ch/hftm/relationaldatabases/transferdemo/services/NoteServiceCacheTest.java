@@ -0,0 +1,87 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NoteService Second-Level Cache Integration Tests")
+class NoteServiceCacheTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAll();
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  @DisplayName("repositoryFindById_calledTwice_shouldServeSecondLoadFromSecondLevelCache")
+  void repositoryFindById_calledTwice_shouldServeSecondLoadFromSecondLevelCache() {
+    // Arrange
+    var saved = noteService.upsert(Note.builder().note("Hot note").build());
+    var hitsBefore = cacheGets("hit");
+
+    // Act
+    repository.findById(saved.getUuid());
+    repository.findById(saved.getUuid());
+
+    // Assert
+    assertThat(entityManagerFactory.getCache().contains(NoteEntity.class, saved.getUuid())).isTrue();
+    assertThat(cacheGets("hit")).isEqualTo(hitsBefore + 1);
+  }
+
+  @Test
+  @DisplayName("upsert_withCachedNote_shouldEvictStaleEntry")
+  void upsert_withCachedNote_shouldEvictStaleEntry() {
+    // Arrange
+    var saved = noteService.upsert(Note.builder().note("Original").build());
+    noteService.findById(saved.getUuid());
+
+    // Act
+    noteService.upsert(Note.builder().uuid(saved.getUuid()).note("Changed").build());
+
+    // Assert
+    assertThat(noteService.findById(saved.getUuid())).get().extracting(Note::getNote).isEqualTo("Changed");
+  }
+
+  @Test
+  @DisplayName("deleteById_withCachedNote_shouldEvictEntry")
+  void deleteById_withCachedNote_shouldEvictEntry() {
+    // Arrange
+    var saved = noteService.upsert(Note.builder().note("To be deleted").build());
+    noteService.findById(saved.getUuid());
+
+    // Act
+    noteService.deleteById(saved.getUuid());
+
+    // Assert
+    assertThat(noteService.findById(saved.getUuid())).isEmpty();
+  }
+
+  private double cacheGets(String result) {
+    return meterRegistry.get("cache.gets").tag("cache", NoteEntity.CACHE_REGION).tag("result", result)
+        .functionCounter().count();
+  }
+}
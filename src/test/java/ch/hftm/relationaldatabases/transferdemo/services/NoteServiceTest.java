@@ -1,24 +1,49 @@
 package ch.hftm.relationaldatabases.transferdemo.services;
 
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
 import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCriteria;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCursor;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteSearchCursor;
 import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
 import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
 import ch.hftm.relationaldatabases.transferdemo.mappers.NoteMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +56,30 @@ class NoteServiceTest {
   @Mock
   private NoteMapper mapper;
 
+  @Spy
+  private NoteProperties properties = new NoteProperties();
+
+  @Mock
+  private EntityManager entityManager;
+
+  @Mock
+  private EntityManagerFactory entityManagerFactory;
+
+  @Mock
+  private Cache cache;
+
+  @Mock
+  private NoteWriteBehindBuffer writeBuffer;
+
+  @Mock
+  private NoteArchiver archiver;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @Spy
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   @InjectMocks
   private NoteService noteService;
 
@@ -55,24 +104,20 @@ class NoteServiceTest {
         .createdAt(now.minusSeconds(3600))
         .updatedAt(now)
         .build();
+
+    lenient().when(entityManagerFactory.getCache()).thenReturn(cache);
   }
 
   @Test
   @DisplayName("getAll_shouldReturnAllNotesAsDtos")
   void getAll_shouldReturnAllNotesAsDtos() {
     // Arrange
-    var entities = List.of(
-        NoteEntity.builder().uuid(UUID.randomUUID()).note("First note").build(),
-        NoteEntity.builder().uuid(UUID.randomUUID()).note("Second note").build()
-    );
     var dtos = List.of(
-        Note.builder().uuid(entities.get(0).getUuid()).note("First note").build(),
-        Note.builder().uuid(entities.get(1).getUuid()).note("Second note").build()
+        Note.builder().uuid(UUID.randomUUID()).note("First note").build(),
+        Note.builder().uuid(UUID.randomUUID()).note("Second note").build()
     );
 
-    when(repository.findAll()).thenReturn(entities);
-    when(mapper.toDto(entities.get(0))).thenReturn(dtos.get(0));
-    when(mapper.toDto(entities.get(1))).thenReturn(dtos.get(1));
+    when(repository.findAllNotes()).thenReturn(dtos);
 
     // Act
     var result = noteService.getAll();
@@ -81,23 +126,210 @@ class NoteServiceTest {
     assertThat(result).hasSize(2);
     assertThat(result).containsExactly(dtos.get(0), dtos.get(1));
 
-    verify(repository).findAll();
-    verify(mapper, times(2)).toDto(any(NoteEntity.class));
+    // projected by the query, no entities to map
+    verify(repository).findAllNotes();
+    verifyNoInteractions(mapper);
   }
 
   @Test
   @DisplayName("getAll_withEmptyRepository_shouldReturnEmptyList")
   void getAll_withEmptyRepository_shouldReturnEmptyList() {
     // Arrange
-    when(repository.findAll()).thenReturn(List.of());
+    when(repository.findAllNotes()).thenReturn(List.of());
 
     // Act
     var result = noteService.getAll();
 
     // Assert
     assertThat(result).isEmpty();
-    verify(repository).findAll();
-    verifyNoInteractions(mapper);
+    verify(repository).findAllNotes();
+  }
+
+  @Test
+  @DisplayName("getAll_shouldRecordReturnedRows")
+  void getAll_shouldRecordReturnedRows() {
+    // Arrange
+    when(repository.findAllNotes()).thenReturn(List.of(sampleNote, sampleNote));
+
+    // Act
+    noteService.getAll();
+    noteService.getAll();
+
+    // Assert
+    var rows = meterRegistry.get("notes.rows").tag("method", "getAll").summary();
+    assertThat(rows.count()).isEqualTo(2);
+    assertThat(rows.totalAmount()).isEqualTo(4);
+  }
+
+  @Test
+  @DisplayName("getPage_withoutCursor_shouldReturnFirstPageWithNextCursor")
+  void getPage_withoutCursor_shouldReturnFirstPageWithNextCursor() {
+    // Arrange
+    properties.setPageSize(2);
+    var previews = List.of(previewAt(300), previewAt(200), previewAt(100));
+    when(repository.findFirstPage(280, Limit.of(3))).thenReturn(previews);
+
+    // Act
+    var page = noteService.getPage(null, null);
+
+    // Assert
+    assertThat(page.getNotes()).extracting(NotePreview::getUuid)
+        .containsExactly(previews.get(0).getUuid(), previews.get(1).getUuid());
+    assertThat(page.hasPrevious()).isFalse();
+    assertThat(page.hasNext()).isTrue();
+    assertThat(NoteCursor.decode(page.getNextCursor()).getUuid()).isEqualTo(previews.get(1).getUuid());
+  }
+
+  @Test
+  @DisplayName("getPage_withAfterCursorOnLastPage_shouldHaveNoNextCursor")
+  void getPage_withAfterCursorOnLastPage_shouldHaveNoNextCursor() {
+    // Arrange
+    properties.setPageSize(2);
+    var cursor = new NoteCursor(Instant.ofEpochSecond(200), UUID.randomUUID());
+    var previews = List.of(previewAt(100));
+    when(repository.findPageAfter(cursor.getCreatedAt(), cursor.getUuid(), 280, Limit.of(3))).thenReturn(previews);
+
+    // Act
+    var page = noteService.getPage(cursor, null);
+
+    // Assert
+    assertThat(page.getNotes()).hasSize(1);
+    assertThat(page.hasNext()).isFalse();
+    assertThat(NoteCursor.decode(page.getPreviousCursor()).getUuid()).isEqualTo(previews.get(0).getUuid());
+    verify(repository, never()).findFirstPage(anyInt(), any(Limit.class));
+  }
+
+  @Test
+  @DisplayName("getPage_withBeforeCursor_shouldReturnPrecedingNotesNewestFirst")
+  void getPage_withBeforeCursor_shouldReturnPrecedingNotesNewestFirst() {
+    // Arrange
+    properties.setPageSize(2);
+    var cursor = new NoteCursor(Instant.ofEpochSecond(100), UUID.randomUUID());
+    // repository returns the preceding notes in ascending order
+    var previews = List.of(previewAt(200), previewAt(300), previewAt(400));
+    when(repository.findPageBefore(cursor.getCreatedAt(), cursor.getUuid(), 280, Limit.of(3))).thenReturn(previews);
+
+    // Act
+    var page = noteService.getPage(null, cursor);
+
+    // Assert
+    assertThat(page.getNotes()).extracting(NotePreview::getUuid)
+        .containsExactly(previews.get(1).getUuid(), previews.get(0).getUuid());
+    assertThat(page.hasPrevious()).isTrue();
+    assertThat(page.hasNext()).isTrue();
+  }
+
+  @Test
+  @DisplayName("getPage_withBeforeCursorNearStart_shouldFallBackToFirstPage")
+  void getPage_withBeforeCursorNearStart_shouldFallBackToFirstPage() {
+    // Arrange
+    properties.setPageSize(2);
+    var cursor = new NoteCursor(Instant.ofEpochSecond(100), UUID.randomUUID());
+    var first = List.of(previewAt(200), previewAt(100));
+    when(repository.findPageBefore(cursor.getCreatedAt(), cursor.getUuid(), 280, Limit.of(3)))
+        .thenReturn(List.of(previewAt(200)));
+    when(repository.findFirstPage(280, Limit.of(3))).thenReturn(first);
+
+    // Act
+    var page = noteService.getPage(null, cursor);
+
+    // Assert
+    assertThat(page.getNotes()).hasSize(2);
+    assertThat(page.hasPrevious()).isFalse();
+    assertThat(page.hasNext()).isFalse();
+  }
+
+  @Test
+  @DisplayName("search_withMoreHitsThanPageSize_shouldReturnCursorOfLastShownHit")
+  void search_withMoreHitsThanPageSize_shouldReturnCursorOfLastShownHit() {
+    // Arrange
+    properties.setPageSize(2);
+    var hits = List.of(searchHit(0.5f), searchHit(0.4f), searchHit(0.3f));
+    when(repository.search("query", 280, 3)).thenReturn(hits);
+    for (var hit : hits.subList(0, 2)) {
+      var preview = NotePreview.builder().uuid(hit.getUuid()).build();
+      when(mapper.toPreview(hit)).thenReturn(preview);
+    }
+
+    // Act
+    var page = noteService.search("query", null);
+
+    // Assert
+    assertThat(page.getNotes()).extracting(NotePreview::getUuid)
+        .containsExactly(hits.get(0).getUuid(), hits.get(1).getUuid());
+    assertThat(page.hasPrevious()).isFalse();
+    assertThat(NoteSearchCursor.decode(page.getNextCursor()))
+        .isEqualTo(new NoteSearchCursor(0.4f, hits.get(1).getUuid()));
+  }
+
+  @Test
+  @DisplayName("search_withCursorOnLastPage_shouldContinueAfterCursorWithoutNextCursor")
+  void search_withCursorOnLastPage_shouldContinueAfterCursorWithoutNextCursor() {
+    // Arrange
+    properties.setPageSize(2);
+    var cursor = new NoteSearchCursor(0.4f, UUID.randomUUID());
+    var hit = searchHit(0.3f);
+    when(repository.searchAfter("query", 0.4f, cursor.getUuid(), 280, 3)).thenReturn(List.of(hit));
+    var preview = NotePreview.builder().uuid(hit.getUuid()).build();
+    when(mapper.toPreview(hit)).thenReturn(preview);
+
+    // Act
+    var page = noteService.search("query", cursor);
+
+    // Assert
+    assertThat(page.getNotes()).hasSize(1);
+    assertThat(page.hasNext()).isFalse();
+    verify(repository, never()).search(any(), anyInt(), anyInt());
+  }
+
+  @Test
+  @DisplayName("findContaining_withWildcardCharacters_shouldEscapeThemAndLimitStatementTime")
+  void findContaining_withWildcardCharacters_shouldEscapeThemAndLimitStatementTime() {
+    // Arrange
+    var preview = previewAt(1);
+    when(repository.findContaining("%50\\%\\_off%", 280, Limit.of(50))).thenReturn(List.of(preview));
+
+    // Act
+    var page = noteService.findContaining("50%_off");
+
+    // Assert
+    assertThat(page.getNotes()).containsExactly(preview);
+    assertThat(page.hasNext()).isFalse();
+    var inOrder = inOrder(repository);
+    inOrder.verify(repository).setLocalStatementTimeout("2000ms");
+    inOrder.verify(repository).findContaining(any(), anyInt(), any(Limit.class));
+  }
+
+  @Test
+  @DisplayName("findContaining_withFragmentShorterThanTrigram_shouldThrowWithoutQuerying")
+  void findContaining_withFragmentShorterThanTrigram_shouldThrowWithoutQuerying() {
+    // Act & Assert
+    assertThatThrownBy(() -> noteService.findContaining(" ab "))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("at least 3 characters");
+    verifyNoInteractions(repository);
+  }
+
+  @Test
+  @DisplayName("findSimilar_shouldReturnConfiguredNumberOfHitsInOrder")
+  void findSimilar_shouldReturnConfiguredNumberOfHitsInOrder() {
+    // Arrange
+    properties.getFragmentSearch().setMaxResults(2);
+    properties.getFragmentSearch().setStatementTimeout(Duration.ofMillis(500));
+    var hits = List.of(searchHit(0.9f), searchHit(0.7f));
+    when(repository.findSimilar("INFRA-4711", 280, 2)).thenReturn(hits);
+    for (var hit : hits) {
+      var preview = NotePreview.builder().uuid(hit.getUuid()).build();
+      when(mapper.toPreview(hit)).thenReturn(preview);
+    }
+
+    // Act
+    var page = noteService.findSimilar("INFRA-4711");
+
+    // Assert
+    assertThat(page.getNotes()).extracting(NotePreview::getUuid)
+        .containsExactly(hits.get(0).getUuid(), hits.get(1).getUuid());
+    verify(repository).setLocalStatementTimeout("500ms");
   }
 
   @Test
@@ -105,7 +337,7 @@ class NoteServiceTest {
   void findById_withExistingId_shouldReturnOptionalWithNote() {
     // Arrange
     var noteId = UUID.randomUUID();
-    when(repository.findById(noteId)).thenReturn(Optional.of(sampleEntity));
+    when(repository.findInPartitionById(noteId)).thenReturn(Optional.of(sampleEntity));
     when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
 
     // Act
@@ -115,16 +347,33 @@ class NoteServiceTest {
     assertThat(result).isPresent();
     assertThat(result.get()).isEqualTo(sampleNote);
 
-    verify(repository).findById(noteId);
+    verify(repository).findInPartitionById(noteId);
     verify(mapper).toDto(sampleEntity);
   }
 
+  @Test
+  @DisplayName("findById_withEntityInSecondLevelCache_shouldLoadItFromThere")
+  void findById_withEntityInSecondLevelCache_shouldLoadItFromThere() {
+    // Arrange
+    var noteId = sampleEntity.getUuid();
+    when(cache.contains(NoteEntity.class, noteId)).thenReturn(true);
+    when(repository.findById(noteId)).thenReturn(Optional.of(sampleEntity));
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+
+    // Act
+    var result = noteService.findById(noteId);
+
+    // Assert
+    assertThat(result).contains(sampleNote);
+    verify(repository, never()).findInPartitionById(noteId);
+  }
+
   @Test
   @DisplayName("findById_withNonExistentId_shouldReturnEmptyOptional")
   void findById_withNonExistentId_shouldReturnEmptyOptional() {
     // Arrange
     var noteId = UUID.randomUUID();
-    when(repository.findById(noteId)).thenReturn(Optional.empty());
+    when(repository.findInPartitionById(noteId)).thenReturn(Optional.empty());
 
     // Act
     var result = noteService.findById(noteId);
@@ -132,22 +381,140 @@ class NoteServiceTest {
     // Assert
     assertThat(result).isEmpty();
 
-    verify(repository).findById(noteId);
+    verify(repository).findInPartitionById(noteId);
     verifyNoInteractions(mapper);
   }
 
   @Test
-  @DisplayName("upsert_withNewNote_shouldCreateAndReturnSavedNote")
-  void upsert_withNewNote_shouldCreateAndReturnSavedNote() {
+  @DisplayName("findById_calledTwice_shouldQueryRepositoryOnce")
+  void findById_calledTwice_shouldQueryRepositoryOnce() {
+    // Arrange
+    var noteId = sampleEntity.getUuid();
+    when(repository.findInPartitionById(noteId)).thenReturn(Optional.of(sampleEntity));
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+
+    // Act
+    var first = noteService.findById(noteId);
+    var second = noteService.findById(noteId);
+
+    // Assert
+    assertThat(second).containsSame(first.orElseThrow());
+    verify(repository, times(1)).findInPartitionById(noteId);
+  }
+
+  @Test
+  @DisplayName("findById_withConcurrentReadsOfColdKey_shouldQueryRepositoryOnce")
+  void findById_withConcurrentReadsOfColdKey_shouldQueryRepositoryOnce() throws Exception {
+    // Arrange
+    var noteId = sampleEntity.getUuid();
+    var loading = new CountDownLatch(1);
+    when(repository.findInPartitionById(noteId)).thenAnswer(invocation -> {
+      loading.await(5, TimeUnit.SECONDS);
+      return Optional.of(sampleEntity);
+    });
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+
+    // Act
+    var results = new ArrayList<Future<Optional<Note>>>();
+    try (var executor = Executors.newFixedThreadPool(8)) {
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> noteService.findById(noteId)));
+      }
+      Thread.sleep(100);
+      loading.countDown();
+    }
+
+    // Assert
+    for (var result : results) {
+      assertThat(result.get()).contains(sampleNote);
+    }
+    verify(repository, times(1)).findInPartitionById(noteId);
+  }
+
+  @Test
+  @DisplayName("findById_afterUpsertOfCachedNote_shouldReloadNote")
+  void findById_afterUpsertOfCachedNote_shouldReloadNote() {
+    // Arrange
+    var noteId = sampleEntity.getUuid();
+    var updatedNote = Note.builder().uuid(noteId).note("Updated").build();
+    when(repository.findInPartitionById(noteId)).thenReturn(Optional.of(sampleEntity));
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote, updatedNote);
+    when(repository.upsert(noteId, "Updated")).thenReturn(sampleEntity);
+    noteService.findById(noteId);
+
+    // Act
+    noteService.upsert(updatedNote);
+    var result = noteService.findById(noteId);
+
+    // Assert
+    assertThat(result).contains(updatedNote);
+    verify(repository, times(2)).findInPartitionById(noteId);
+  }
+
+  @Test
+  @DisplayName("findById_afterDeleteOfCachedNote_shouldReturnEmptyOptional")
+  void findById_afterDeleteOfCachedNote_shouldReturnEmptyOptional() {
+    // Arrange
+    var noteId = sampleEntity.getUuid();
+    when(repository.findInPartitionById(noteId)).thenReturn(Optional.of(sampleEntity), Optional.empty());
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+    noteService.findById(noteId);
+
+    // Act
+    noteService.deleteById(noteId);
+    var result = noteService.findById(noteId);
+
+    // Assert
+    assertThat(result).isEmpty();
+    verify(cache).evict(NoteEntity.class, noteId);
+  }
+
+  @Test
+  @DisplayName("getVersion_shouldChangeWithWritesOnly")
+  void getVersion_shouldChangeWithWritesOnly() {
+    // Arrange
+    var initial = noteService.getVersion();
+    noteService.findById(UUID.randomUUID());
+
+    // Act
+    var afterRead = noteService.getVersion();
+    noteService.deleteById(UUID.randomUUID());
+    var afterDelete = noteService.getVersion();
+    noteService.evictAllFromCache();
+
+    // Assert
+    assertThat(afterRead).isEqualTo(initial);
+    assertThat(afterDelete).isNotEqualTo(initial);
+    assertThat(noteService.getVersion()).isNotEqualTo(afterDelete);
+  }
+
+  @Test
+  @DisplayName("getPage_withoutCursorCalledTwice_shouldQueryFirstPageOnceUntilNextWrite")
+  void getPage_withoutCursorCalledTwice_shouldQueryFirstPageOnceUntilNextWrite() {
+    // Arrange
+    properties.setPageSize(2);
+    var previews = List.of(previewAt(200), previewAt(100));
+    when(repository.findFirstPage(280, Limit.of(3))).thenReturn(previews);
+
+    // Act
+    var first = noteService.getPage(null, null);
+    var second = noteService.getPage(null, null);
+    noteService.deleteById(previews.getFirst().getUuid());
+    noteService.getPage(null, null);
+
+    // Assert
+    assertThat(second).isSameAs(first);
+    verify(repository, times(2)).findFirstPage(280, Limit.of(3));
+  }
+
+  @Test
+  @DisplayName("upsert_withNewNote_shouldGenerateUuidAndUpsertInOneStatement")
+  void upsert_withNewNote_shouldGenerateUuidAndUpsertInOneStatement() {
     // Arrange
     var newNote = Note.builder()
         .note("New note content")
         .build(); // No UUID - indicates new note
 
-    var newEntity = NoteEntity.builder()
-        .note("New note content")
-        .build();
-
     var savedEntity = NoteEntity.builder()
         .uuid(UUID.randomUUID())
         .note("New note content")
@@ -162,8 +529,7 @@ class NoteServiceTest {
         .updatedAt(savedEntity.getUpdatedAt())
         .build();
 
-    when(mapper.toEntity(newNote)).thenReturn(newEntity);
-    when(repository.save(newEntity)).thenReturn(savedEntity);
+    when(repository.upsert(any(UUID.class), eq("New note content"))).thenReturn(savedEntity);
     when(mapper.toDto(savedEntity)).thenReturn(savedNote);
 
     // Act
@@ -172,15 +538,15 @@ class NoteServiceTest {
     // Assert
     assertThat(result).isEqualTo(savedNote);
 
-    verify(mapper).toEntity(newNote);
-    verify(repository).save(newEntity);
+    verify(repository).upsert(any(UUID.class), eq("New note content"));
     verify(mapper).toDto(savedEntity);
     verify(repository, never()).findById(any(UUID.class));
+    verify(repository, never()).save(any(NoteEntity.class));
   }
 
   @Test
-  @DisplayName("upsert_withExistingNote_shouldUpdateAndReturnSavedNote")
-  void upsert_withExistingNote_shouldUpdateAndReturnSavedNote() {
+  @DisplayName("upsert_withExistingNote_shouldUpsertWithGivenUuid")
+  void upsert_withExistingNote_shouldUpsertWithGivenUuid() {
     // Arrange
     var existingId = UUID.randomUUID();
     var updateNote = Note.builder()
@@ -188,17 +554,10 @@ class NoteServiceTest {
         .note("Updated content")
         .build();
 
-    var existingEntity = NoteEntity.builder()
-        .uuid(existingId)
-        .note("Original content")
-        .createdAt(Instant.now().minusSeconds(3600))
-        .updatedAt(Instant.now().minusSeconds(1800))
-        .build();
-
     var savedEntity = NoteEntity.builder()
         .uuid(existingId)
         .note("Updated content")
-        .createdAt(existingEntity.getCreatedAt())
+        .createdAt(Instant.now().minusSeconds(3600))
         .updatedAt(Instant.now())
         .build();
 
@@ -209,9 +568,7 @@ class NoteServiceTest {
         .updatedAt(savedEntity.getUpdatedAt())
         .build();
 
-    when(repository.findById(existingId)).thenReturn(Optional.of(existingEntity));
-    doNothing().when(mapper).updateEntity(updateNote, existingEntity);
-    when(repository.save(existingEntity)).thenReturn(savedEntity);
+    when(repository.upsert(existingId, "Updated content")).thenReturn(savedEntity);
     when(mapper.toDto(savedEntity)).thenReturn(savedNote);
 
     // Act
@@ -220,113 +577,298 @@ class NoteServiceTest {
     // Assert
     assertThat(result).isEqualTo(savedNote);
 
-    verify(repository).findById(existingId);
-    verify(mapper).updateEntity(updateNote, existingEntity);
-    verify(repository).save(existingEntity);
-    verify(mapper).toDto(savedEntity);
-    verify(mapper, never()).toEntity(any(Note.class));
+    verify(repository).upsert(existingId, "Updated content");
+    verify(repository, never()).findById(any(UUID.class));
+    verify(mapper, never()).updateEntity(any(Note.class), any(NoteEntity.class));
+    verify(cache).evict(NoteEntity.class, existingId);
   }
 
   @Test
-  @DisplayName("upsert_withUuidButNonExistentEntity_shouldCreateNewEntity")
-  void upsert_withUuidButNonExistentEntity_shouldCreateNewEntity() {
+  @DisplayName("upsert_withVersion_shouldUpdateOnlyAtThatVersion")
+  void upsert_withVersion_shouldUpdateOnlyAtThatVersion() {
     // Arrange
-    var nonExistentId = UUID.randomUUID();
-    var noteWithInvalidId = Note.builder()
-        .uuid(nonExistentId)
-        .note("Note with invalid ID")
-        .build();
+    var edit = Note.builder().uuid(sampleEntity.getUuid()).note("Edited").version(4L).build();
+    when(repository.updateAtVersion(sampleEntity.getUuid(), "Edited", 4L)).thenReturn(sampleEntity);
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
 
-    var newEntity = NoteEntity.builder()
-        .uuid(nonExistentId)
-        .note("Note with invalid ID")
-        .build();
+    // Act
+    var result = noteService.upsert(edit);
 
-    var savedEntity = NoteEntity.builder()
-        .uuid(nonExistentId)
-        .note("Note with invalid ID")
-        .createdAt(Instant.now())
-        .updatedAt(Instant.now())
-        .build();
+    // Assert
+    assertThat(result).isEqualTo(sampleNote);
+    verify(repository, never()).upsert(any(), any());
+  }
 
-    var savedNote = Note.builder()
-        .uuid(nonExistentId)
-        .note("Note with invalid ID")
-        .createdAt(savedEntity.getCreatedAt())
-        .updatedAt(savedEntity.getUpdatedAt())
-        .build();
+  @Test
+  @DisplayName("upsert_withOutdatedVersion_shouldFailWithoutOverwriting")
+  void upsert_withOutdatedVersion_shouldFailWithoutOverwriting() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var edit = Note.builder().uuid(uuid).note("Stale edit").version(1L).build();
+    when(repository.updateAtVersion(uuid, "Stale edit", 1L)).thenReturn(null);
+
+    // Act & Assert
+    assertThatThrownBy(() -> noteService.upsert(edit))
+        .isInstanceOf(ObjectOptimisticLockingFailureException.class)
+        .hasMessageContaining(uuid.toString());
+    verify(repository, never()).upsert(any(), any());
+    verify(cache).evict(NoteEntity.class, uuid);
+  }
 
-    when(repository.findById(nonExistentId)).thenReturn(Optional.empty());
-    when(mapper.toEntity(noteWithInvalidId)).thenReturn(newEntity);
-    when(repository.save(newEntity)).thenReturn(savedEntity);
-    when(mapper.toDto(savedEntity)).thenReturn(savedNote);
+  @Test
+  @DisplayName("upsert_withWriteBehindAcceptingEdit_shouldOnlyBufferIt")
+  void upsert_withWriteBehindAcceptingEdit_shouldOnlyBufferIt() {
+    // Arrange
+    var edit = Note.builder().uuid(sampleEntity.getUuid()).note("Autosaved").build();
+    var stored = Note.builder().uuid(sampleEntity.getUuid()).note("Sample note").version(3L).build();
+    when(writeBuffer.isRunning()).thenReturn(true);
+    when(writeBuffer.offer(any())).thenReturn(true);
+    when(repository.findInPartitionById(sampleEntity.getUuid())).thenReturn(Optional.of(sampleEntity));
+    when(mapper.toDto(sampleEntity)).thenReturn(stored);
 
     // Act
-    var result = noteService.upsert(noteWithInvalidId);
+    var result = noteService.upsert(edit);
 
     // Assert
-    assertThat(result).isEqualTo(savedNote);
+    assertThat(result.getUuid()).isEqualTo(edit.getUuid());
+    assertThat(result.getNote()).isEqualTo("Autosaved");
+    assertThat(result.getUpdatedAt()).isNotNull();
+    // buffered at the version it replaces, so the flush can tell whether the note was changed in the meantime
+    assertThat(result.getVersion()).isEqualTo(3L);
+    verify(writeBuffer).offer(result);
+    verify(repository, never()).upsert(any(), any());
+  }
 
-    verify(repository).findById(nonExistentId);
-    verify(mapper).toEntity(noteWithInvalidId);
-    verify(repository).save(newEntity);
-    verify(mapper).toDto(savedEntity);
-    verify(mapper, never()).updateEntity(any(Note.class), any(NoteEntity.class));
+  @Test
+  @DisplayName("upsert_withWriteBehindAndUnknownNote_shouldWriteDirectly")
+  void upsert_withWriteBehindAndUnknownNote_shouldWriteDirectly() {
+    // Arrange
+    var uuid = sampleEntity.getUuid();
+    when(writeBuffer.isRunning()).thenReturn(true);
+    when(repository.findInPartitionById(uuid)).thenReturn(Optional.empty());
+    when(archiver.findById(uuid)).thenReturn(Optional.empty());
+    when(repository.upsert(uuid, "Created")).thenReturn(sampleEntity);
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+
+    // Act
+    noteService.upsert(Note.builder().uuid(uuid).note("Created").build());
+
+    // Assert
+    verify(writeBuffer, never()).offer(any());
+    verify(repository).upsert(uuid, "Created");
   }
 
   @Test
-  @DisplayName("upsert_withNullNote_shouldCreateNewEntity")
-  void upsert_withNullNoteContent_shouldCreateNewEntity() {
+  @DisplayName("upsert_withVersion_shouldWriteDirectlyAndDiscardBufferedEdit")
+  void upsert_withVersion_shouldWriteDirectlyAndDiscardBufferedEdit() {
     // Arrange
-    var noteWithNullContent = Note.builder()
-        .note(null)
-        .build();
+    var edit = Note.builder().uuid(sampleEntity.getUuid()).note("Saved").version(0L).build();
+    when(repository.updateAtVersion(sampleEntity.getUuid(), "Saved", 0L)).thenReturn(sampleEntity);
 
-    var newEntity = NoteEntity.builder()
-        .note(null)
-        .build();
+    // Act
+    noteService.upsert(edit);
 
-    var savedEntity = NoteEntity.builder()
-        .uuid(UUID.randomUUID())
-        .note(null)
-        .createdAt(Instant.now())
-        .updatedAt(Instant.now())
-        .build();
+    // Assert
+    verify(writeBuffer, never()).offer(any());
+    verify(writeBuffer).discard(sampleEntity.getUuid());
+  }
 
-    var savedNote = Note.builder()
-        .uuid(savedEntity.getUuid())
+  @Test
+  @DisplayName("upsert_withArchivedNote_shouldRestoreItAndWriteAgain")
+  void upsert_withArchivedNote_shouldRestoreItAndWriteAgain() {
+    // Arrange - the upsert does not see archived notes
+    var uuid = sampleEntity.getUuid();
+    when(repository.upsert(uuid, "Edited")).thenReturn(null, sampleEntity);
+    when(archiver.restore(List.of(uuid))).thenReturn(1);
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+
+    // Act
+    var result = noteService.upsert(Note.builder().uuid(uuid).note("Edited").build());
+
+    // Assert
+    assertThat(result).isEqualTo(sampleNote);
+    verify(repository, times(2)).upsert(uuid, "Edited");
+  }
+
+  @Test
+  @DisplayName("findById_withArchivedNote_shouldFallBackToArchive")
+  void findById_withArchivedNote_shouldFallBackToArchive() {
+    // Arrange
+    var uuid = sampleNote.getUuid();
+    when(repository.findInPartitionById(uuid)).thenReturn(Optional.empty());
+    when(archiver.findById(uuid)).thenReturn(Optional.of(sampleNote));
+
+    // Act
+    var result = noteService.findById(uuid);
+
+    // Assert
+    assertThat(result).contains(sampleNote);
+  }
+
+  @Test
+  @DisplayName("findById_withBufferedEdit_shouldReturnBufferedText")
+  void findById_withBufferedEdit_shouldReturnBufferedText() {
+    // Arrange
+    var uuid = sampleNote.getUuid();
+    when(repository.findInPartitionById(uuid)).thenReturn(Optional.of(sampleEntity));
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
+    var bufferedAt = sampleNote.getUpdatedAt().plusSeconds(1);
+    when(writeBuffer.getBuffered(uuid))
+        .thenReturn(Note.builder().uuid(uuid).note("Not yet written").updatedAt(bufferedAt).build());
+
+    // Act
+    var result = noteService.findById(uuid);
+
+    // Assert
+    assertThat(result).get().extracting(Note::getNote).isEqualTo("Not yet written");
+    assertThat(result.get().getCreatedAt()).isEqualTo(sampleNote.getCreatedAt());
+    // the edit page derives its ETag from updatedAt
+    assertThat(result.get().getUpdatedAt()).isEqualTo(bufferedAt);
+  }
+
+  @Test
+  @DisplayName("upsert_withNewNotes_shouldGenerateDistinctUuids")
+  void upsert_withNewNotes_shouldGenerateDistinctUuids() {
+    // Arrange
+    var uuids = new ArrayList<UUID>();
+    when(repository.upsert(any(UUID.class), any())).thenAnswer(invocation -> {
+      uuids.add(invocation.getArgument(0));
+      return sampleEntity;
+    });
+
+    // Act
+    noteService.upsert(Note.builder().note("First").build());
+    noteService.upsert(Note.builder().note("Second").build());
+
+    // Assert
+    assertThat(uuids).hasSize(2).doesNotHaveDuplicates();
+    assertThat(uuids).allSatisfy(uuid -> assertThat(uuid.version()).isEqualTo(7));
+  }
+
+  @Test
+  @DisplayName("upsert_withNullNote_shouldPassNullToDatabase")
+  void upsert_withNullNoteContent_shouldPassNullToDatabase() {
+    // Arrange
+    var noteWithNullContent = Note.builder()
         .note(null)
-        .createdAt(savedEntity.getCreatedAt())
-        .updatedAt(savedEntity.getUpdatedAt())
         .build();
 
-    when(mapper.toEntity(noteWithNullContent)).thenReturn(newEntity);
-    when(repository.save(newEntity)).thenReturn(savedEntity);
-    when(mapper.toDto(savedEntity)).thenReturn(savedNote);
+    when(repository.upsert(any(UUID.class), isNull())).thenReturn(sampleEntity);
+    when(mapper.toDto(sampleEntity)).thenReturn(sampleNote);
 
     // Act
     var result = noteService.upsert(noteWithNullContent);
 
+    // Assert - the NOT NULL constraint is enforced by the database
+    assertThat(result).isEqualTo(sampleNote);
+    verify(repository).upsert(any(UUID.class), isNull());
+  }
+
+  @Test
+  @DisplayName("upsertAll_shouldResolveExistingNotesWithOneQueryAndCreateTheRest")
+  void upsertAll_shouldResolveExistingNotesWithOneQueryAndCreateTheRest() {
+    // Arrange
+    var existingEntity = entityAt(100);
+    var update = Note.builder().uuid(existingEntity.getUuid()).note("Updated").build();
+    var create = Note.builder().note("Created").build();
+    var newEntity = entityAt(200);
+
+    when(repository.findAllById(Set.of(existingEntity.getUuid()))).thenReturn(List.of(existingEntity));
+    when(mapper.toEntity(create)).thenReturn(newEntity);
+    stubToDto(List.of(existingEntity, newEntity));
+
+    // Act
+    var result = noteService.upsertAll(List.of(update, create));
+
     // Assert
-    assertThat(result).isEqualTo(savedNote);
+    assertThat(result).extracting(Note::getUuid).containsExactly(existingEntity.getUuid(), newEntity.getUuid());
+    verify(mapper).updateEntity(update, existingEntity);
+    verify(entityManager).persist(newEntity);
+    verify(repository, never()).findById(any(UUID.class));
+    verify(repository, never()).save(any(NoteEntity.class));
 
-    verify(mapper).toEntity(noteWithNullContent);
-    verify(repository).save(newEntity);
-    verify(mapper).toDto(savedEntity);
+    var inOrder = inOrder(repository, entityManager);
+    inOrder.verify(repository).flush();
+    inOrder.verify(entityManager).clear();
+  }
+
+  @Test
+  @DisplayName("upsertAll_withMoreNotesThanChunkSize_shouldFlushAndClearPerChunk")
+  void upsertAll_withMoreNotesThanChunkSize_shouldFlushAndClearPerChunk() {
+    // Arrange
+    properties.setUpsertChunkSize(2);
+    var notes = List.of(
+        Note.builder().note("One").build(),
+        Note.builder().note("Two").build(),
+        Note.builder().note("Three").build()
+    );
+    for (var note : notes) {
+      // the uuid is assigned by persist
+      var entity = NoteEntity.builder().uuid(UUID.randomUUID()).note(note.getNote()).build();
+      when(mapper.toEntity(note)).thenReturn(entity);
+    }
+    when(mapper.toDto(any(NoteEntity.class))).thenAnswer(invocation -> Note.builder()
+        .uuid(invocation.<NoteEntity>getArgument(0).getUuid())
+        .note(invocation.<NoteEntity>getArgument(0).getNote())
+        .build());
+
+    // Act
+    var result = noteService.upsertAll(notes);
+
+    // Assert
+    assertThat(result).extracting(Note::getNote).containsExactly("One", "Two", "Three");
+    verify(repository, times(2)).flush();
+    verify(entityManager, times(2)).clear();
+    verify(repository, never()).findAllById(any());
   }
 
   @Test
-  @DisplayName("deleteById_shouldCallRepositoryDeleteById")
-  void deleteById_shouldCallRepositoryDeleteById() {
+  @DisplayName("upsertAll_withUnknownUuid_shouldPersistNoteWithThatUuid")
+  void upsertAll_withUnknownUuid_shouldPersistNoteWithThatUuid() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var note = Note.builder().uuid(uuid).note("Imported").build();
+    var entity = NoteEntity.builder().uuid(uuid).note("Imported").build();
+
+    when(repository.findAllById(Set.of(uuid))).thenReturn(List.of());
+    when(mapper.toEntity(note)).thenReturn(entity);
+    when(mapper.toDto(entity)).thenReturn(note);
+
+    // Act
+    var result = noteService.upsertAll(List.of(note));
+
+    // Assert
+    assertThat(result).containsExactly(note);
+    verify(entityManager).persist(entity);
+    verify(repository, never()).save(any(NoteEntity.class));
+  }
+
+  @Test
+  @DisplayName("upsertAll_withEmptyCollection_shouldNotTouchTheDatabase")
+  void upsertAll_withEmptyCollection_shouldNotTouchTheDatabase() {
+    // Act
+    var result = noteService.upsertAll(List.of());
+
+    // Assert
+    assertThat(result).isEmpty();
+    verifyNoInteractions(repository, entityManager);
+  }
+
+  @Test
+  @DisplayName("deleteById_shouldSoftDeleteNote")
+  void deleteById_shouldSoftDeleteNote() {
     // Arrange
     var noteId = UUID.randomUUID();
-    doNothing().when(repository).deleteById(noteId);
+    when(repository.softDeleteById(noteId)).thenReturn(1);
 
     // Act
     noteService.deleteById(noteId);
 
     // Assert
-    verify(repository).deleteById(noteId);
+    verify(repository).softDeleteById(noteId);
+    verify(repository, never()).deleteById(any());
+    verify(archiver, never()).delete(any());
+    verify(writeBuffer).discard(noteId);
   }
 
   @Test
@@ -334,12 +876,65 @@ class NoteServiceTest {
   void deleteById_withNonExistentId_shouldNotThrowException() {
     // Arrange
     var noteId = UUID.randomUUID();
-    doNothing().when(repository).deleteById(noteId); // Repository handles non-existent gracefully
+    when(repository.softDeleteById(noteId)).thenReturn(0);
 
     // Act & Assert - Should not throw
     noteService.deleteById(noteId);
 
-    verify(repository).deleteById(noteId);
+    verify(repository).softDeleteById(noteId);
+    verify(archiver).delete(noteId);
+  }
+
+  @Test
+  @DisplayName("deleteMatching_withCriteria_shouldDeleteInBothTiersWithEscapedPattern")
+  void deleteMatching_withCriteria_shouldDeleteInBothTiersWithEscapedPattern() {
+    // Arrange
+    var before = Instant.parse("2025-01-01T00:00:00Z");
+    var criteria = NoteCriteria.builder().createdBefore(before).containing("50%").build();
+    when(repository.softDeleteMatching(before, null, "%50\\%%")).thenReturn(3);
+    when(archiver.deleteMatching(before, null, "%50\\%%")).thenReturn(2);
+
+    // Act
+    var deleted = noteService.deleteMatching(criteria);
+
+    // Assert
+    assertThat(deleted).isEqualTo(5);
+  }
+
+  @Test
+  @DisplayName("deleteAll_withMoreUuidsThanChunkSize_shouldDeleteOneChunkPerStatement")
+  void deleteAll_withMoreUuidsThanChunkSize_shouldDeleteOneChunkPerStatement() {
+    // Arrange
+    properties.setBulkChunkSize(2);
+    var uuids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+    when(repository.softDeleteAllById(any())).thenReturn(2, 0);
+    when(archiver.deleteAll(any())).thenReturn(0, 1);
+
+    // Act
+    var deleted = noteService.deleteAll(uuids);
+
+    // Assert
+    assertThat(deleted).isEqualTo(3);
+    verify(repository).softDeleteAllById(new UUID[] {uuids.get(0), uuids.get(1)});
+    verify(repository).softDeleteAllById(new UUID[] {uuids.get(2)});
+    verify(writeBuffer, times(3)).discard(any());
+  }
+
+  @Test
+  @DisplayName("replaceText_withEmptyText_shouldThrowException")
+  void replaceText_withEmptyText_shouldThrowException() {
+    // Act & Assert
+    assertThatThrownBy(() -> noteService.replaceText("", "x")).isInstanceOf(IllegalArgumentException.class);
+    verifyNoInteractions(repository, archiver);
+  }
+
+  @Test
+  @DisplayName("deleteMatching_withoutCriteria_shouldThrowException")
+  void deleteMatching_withoutCriteria_shouldThrowException() {
+    // Act & Assert
+    assertThatThrownBy(() -> noteService.deleteMatching(NoteCriteria.builder().build()))
+        .isInstanceOf(IllegalArgumentException.class);
+    verifyNoInteractions(repository, archiver);
   }
 
   @Test
@@ -350,10 +945,6 @@ class NoteServiceTest {
         .note("")
         .build();
 
-    var newEntity = NoteEntity.builder()
-        .note("")
-        .build();
-
     var savedEntity = NoteEntity.builder()
         .uuid(UUID.randomUUID())
         .note("")
@@ -368,8 +959,7 @@ class NoteServiceTest {
         .updatedAt(savedEntity.getUpdatedAt())
         .build();
 
-    when(mapper.toEntity(emptyNote)).thenReturn(newEntity);
-    when(repository.save(newEntity)).thenReturn(savedEntity);
+    when(repository.upsert(any(UUID.class), eq(""))).thenReturn(savedEntity);
     when(mapper.toDto(savedEntity)).thenReturn(savedNote);
 
     // Act
@@ -379,8 +969,7 @@ class NoteServiceTest {
     assertThat(result).isEqualTo(savedNote);
     assertThat(result.getNote()).isEmpty();
 
-    verify(mapper).toEntity(emptyNote);
-    verify(repository).save(newEntity);
+    verify(repository).upsert(any(UUID.class), eq(""));
     verify(mapper).toDto(savedEntity);
   }
 
@@ -405,4 +994,43 @@ class NoteServiceTest {
     assertThat(deleteByIdMethod.isAnnotationPresent(org.springframework.transaction.annotation.Transactional.class))
         .isTrue();
   }
+
+  private static NoteEntity entityAt(long epochSecond) {
+    var timestamp = Instant.ofEpochSecond(epochSecond);
+    return NoteEntity.builder()
+        .uuid(UUID.randomUUID())
+        .note("Note at " + epochSecond)
+        .createdAt(timestamp)
+        .updatedAt(timestamp)
+        .build();
+  }
+
+  private static NoteRepository.SearchHit searchHit(float rank) {
+    var hit = mock(NoteRepository.SearchHit.class);
+    var uuid = UUID.randomUUID();
+    lenient().when(hit.getUuid()).thenReturn(uuid);
+    lenient().when(hit.getRank()).thenReturn(rank);
+    return hit;
+  }
+
+  private static NotePreview previewAt(long epochSecond) {
+    var timestamp = Instant.ofEpochSecond(epochSecond);
+    return NotePreview.builder()
+        .uuid(UUID.randomUUID())
+        .preview("Note at " + epochSecond)
+        .createdAt(timestamp)
+        .updatedAt(timestamp)
+        .build();
+  }
+
+  private void stubToDto(List<NoteEntity> entities) {
+    for (var entity : entities) {
+      when(mapper.toDto(entity)).thenReturn(Note.builder()
+          .uuid(entity.getUuid())
+          .note(entity.getNote())
+          .createdAt(entity.getCreatedAt())
+          .updatedAt(entity.getUpdatedAt())
+          .build());
+    }
+  }
 }
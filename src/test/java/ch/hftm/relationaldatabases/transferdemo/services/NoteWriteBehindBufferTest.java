@@ -0,0 +1,235 @@
+package ch.hftm.relationaldatabases.transferdemo.services;
+
+import ch.hftm.relationaldatabases.transferdemo.config.NoteProperties;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NoteWriteBehindBuffer Tests")
+class NoteWriteBehindBufferTest {
+
+  @Mock
+  private ObjectProvider<NoteService> noteServiceProvider;
+
+  @Mock
+  private NoteService noteService;
+
+  private final NoteProperties properties = new NoteProperties();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  private NoteWriteBehindBuffer buffer;
+
+  @TempDir
+  private Path directory;
+
+  @BeforeEach
+  void setUp() {
+    // flushes are triggered by the tests, not by the timer
+    properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+    properties.getWriteBehind().setSpillFile(directory.resolve("spilled.ndjson").toString());
+    lenient().when(noteServiceProvider.getObject()).thenReturn(noteService);
+    buffer = new NoteWriteBehindBuffer(noteServiceProvider, properties, objectMapper, meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (buffer.isRunning()) {
+      buffer.stop();
+    }
+  }
+
+  @Test
+  @DisplayName("offer_whenNotStarted_shouldRejectNote")
+  void offer_whenNotStarted_shouldRejectNote() {
+    // Act
+    var accepted = buffer.offer(note(UUID.randomUUID(), "Written directly"));
+
+    // Assert
+    assertThat(accepted).isFalse();
+    assertThat(buffer.getBuffered(UUID.randomUUID())).isNull();
+  }
+
+  @Test
+  @DisplayName("flush_withSeveralEditsOfOneNote_shouldWriteLatestTextOnce")
+  void flush_withSeveralEditsOfOneNote_shouldWriteLatestTextOnce() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var other = UUID.randomUUID();
+    buffer.start();
+    buffer.offer(note(uuid, "First"));
+    buffer.offer(note(uuid, "Second"));
+    buffer.offer(note(other, "Other"));
+    buffer.offer(note(uuid, "Third"));
+    when(noteService.upsertBuffered(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Act
+    buffer.flush();
+
+    // Assert
+    verify(noteService).upsertBuffered(argThat(notes -> notes.size() == 2
+        && notes.containsAll(List.of(note(uuid, "Third"), note(other, "Other")))));
+    assertThat(buffer.getBuffered(uuid)).isNull();
+    assertThat(meterRegistry.get("notes.write.behind.offered").counter().count()).isEqualTo(4);
+    assertThat(meterRegistry.get("notes.write.behind.coalesced").counter().count()).isEqualTo(2);
+    assertThat(meterRegistry.get("notes.write.behind.flushed").counter().count()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("flush_whenWriteFails_shouldKeepEditsUnlessReplacedMeanwhile")
+  void flush_whenWriteFails_shouldKeepEditsUnlessReplacedMeanwhile() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var other = UUID.randomUUID();
+    buffer.start();
+    buffer.offer(note(uuid, "Failed"));
+    buffer.offer(note(other, "Failed too"));
+    doAnswer(invocation -> {
+      buffer.offer(note(uuid, "Newer"));
+      throw new DataAccessResourceFailureException("database down");
+    }).when(noteService).upsertBuffered(any());
+
+    // Act
+    buffer.flush();
+
+    // Assert
+    assertThat(buffer.getBuffered(uuid).getNote()).isEqualTo("Newer");
+    assertThat(buffer.getBuffered(other).getNote()).isEqualTo("Failed too");
+    assertThat(meterRegistry.get("notes.write.behind.flushed").counter().count()).isZero();
+  }
+
+  @Test
+  @DisplayName("flush_withEditBufferedDuringWrite_shouldKeepItAtWrittenVersion")
+  void flush_withEditBufferedDuringWrite_shouldKeepItAtWrittenVersion() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    buffer.start();
+    buffer.offer(note(uuid, "Written"));
+    when(noteService.upsertBuffered(any())).thenAnswer(invocation -> {
+      buffer.offer(note(uuid, "Newer"));
+      return List.of(Note.builder().uuid(uuid).note("Written").version(1L).build());
+    });
+
+    // Act
+    buffer.flush();
+
+    // Assert
+    assertThat(buffer.getBuffered(uuid).getNote()).isEqualTo("Newer");
+    assertThat(buffer.getBuffered(uuid).getVersion()).isEqualTo(1L);
+  }
+
+  @Test
+  @DisplayName("flush_withNoteChangedDirectly_shouldDropEdit")
+  void flush_withNoteChangedDirectly_shouldDropEdit() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    buffer.start();
+    buffer.offer(note(uuid, "Stale"));
+    when(noteService.upsertBuffered(any())).thenReturn(List.of());
+
+    // Act
+    buffer.flush();
+
+    // Assert
+    assertThat(buffer.getBuffered(uuid)).isNull();
+    assertThat(meterRegistry.get("notes.write.behind.superseded").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("stop_whenFinalFlushFails_shouldSaveEditsAndBufferThemOnNextStart")
+  void stop_whenFinalFlushFails_shouldSaveEditsAndBufferThemOnNextStart() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    var edit = Note.builder().uuid(uuid).note("Saved on shutdown").updatedAt(Instant.parse("2026-01-01T00:00:00Z"))
+        .version(4L).build();
+    buffer.start();
+    buffer.offer(edit);
+    when(noteService.upsertBuffered(any())).thenThrow(new DataAccessResourceFailureException("database down"));
+    buffer.stop();
+    var restarted = new NoteWriteBehindBuffer(noteServiceProvider, properties, objectMapper, meterRegistry);
+
+    // Act
+    restarted.start();
+    restarted.stop();
+
+    // Assert
+    assertThat(restarted.getBuffered(uuid)).isEqualTo(edit);
+    verify(noteService, times(2)).upsertBuffered(List.of(edit));
+    assertThat(Files.exists(Path.of(properties.getWriteBehind().getSpillFile()))).isTrue();
+  }
+
+  @Test
+  @DisplayName("offer_reachingMaxBuffered_shouldFlushBeforeInterval")
+  void offer_reachingMaxBuffered_shouldFlushBeforeInterval() {
+    // Arrange
+    properties.getWriteBehind().setMaxBuffered(2);
+    buffer.start();
+    buffer.offer(note(UUID.randomUUID(), "First"));
+
+    // Act
+    buffer.offer(note(UUID.randomUUID(), "Second"));
+
+    // Assert
+    verify(noteService, timeout(1000)).upsertBuffered(argThat(notes -> notes.size() == 2));
+  }
+
+  @Test
+  @DisplayName("stop_shouldFlushBufferedEditsAndRejectLaterOnes")
+  void stop_shouldFlushBufferedEditsAndRejectLaterOnes() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    buffer.start();
+    buffer.offer(note(uuid, "Buffered before shutdown"));
+
+    // Act
+    buffer.stop();
+
+    // Assert
+    verify(noteService).upsertBuffered(List.of(note(uuid, "Buffered before shutdown")));
+    assertThat(buffer.offer(note(uuid, "After shutdown"))).isFalse();
+  }
+
+  @Test
+  @DisplayName("discard_shouldDropBufferedEdit")
+  void discard_shouldDropBufferedEdit() {
+    // Arrange
+    var uuid = UUID.randomUUID();
+    buffer.start();
+    buffer.offer(note(uuid, "Superseded"));
+
+    // Act
+    buffer.discard(uuid);
+    buffer.flush();
+
+    // Assert
+    assertThat(buffer.getBuffered(uuid)).isNull();
+    verifyNoInteractions(noteService);
+  }
+
+  private static Note note(UUID uuid, String text) {
+    return Note.builder().uuid(uuid).note(text).version(0L).build();
+  }
+}
@@ -0,0 +1,141 @@
+package ch.hftm.relationaldatabases.transferdemo.web;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCursor;
+import ch.hftm.relationaldatabases.transferdemo.jpa.repositories.NoteRepository;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a mixed load against the running application: many clients request a list page that always queries the
+ * database, while a few clients request the cached first page. The connection pool is kept small so the database is
+ * the bottleneck, like with a slow database. With platform threads, the requests waiting for a connection occupy all
+ * Tomcat threads and the cached requests queue behind them; with virtual threads they keep being served.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.hikari.maximum-pool-size=4",
+    "server.tomcat.threads.max=200"
+})
+abstract class AbstractThreadingBenchmark extends AbstractIntegrationTest {
+  private static final int DATABASE_CLIENTS = Integer.getInteger("benchmark.clients", 400);
+  private static final int CACHED_CLIENTS = 20;
+  private static final Duration WARMUP = Duration.ofSeconds(3);
+  private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 10));
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private NoteRepository repository;
+
+  @AfterEach
+  void cleanUp() {
+    repository.deleteAllInBatch();
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  void mixedLoad_shouldKeepServingCachedPages() throws Exception {
+    // Arrange
+    var notes = noteService.upsertAll(IntStream.range(0, 2_000)
+        .mapToObj(i -> Note.builder().note("Benchmark note " + i).build())
+        .toList());
+    var cursor = NoteCursor.of(notes.get(notes.size() / 2)).encode();
+    var databasePage = URI.create("http://localhost:" + port + "/?after=" + cursor);
+    var cachedPage = URI.create("http://localhost:" + port + "/");
+
+    // Act
+    run(databasePage, cachedPage, WARMUP);
+    var result = run(databasePage, cachedPage, MEASUREMENT);
+
+    // Assert
+    System.out.printf("%n%s (%d database clients, %d cached clients, %ds)%n",
+        getClass().getSimpleName(), DATABASE_CLIENTS, CACHED_CLIENTS, MEASUREMENT.toSeconds());
+    System.out.printf("%-10s %10s %10s %10s %10s%n", "page", "req/s", "p50 ms", "p99 ms", "max ms");
+    print("database", result.database());
+    print("cached", result.cached());
+    assertThat(result.cached()).isNotEmpty();
+  }
+
+  private Result run(URI databasePage, URI cachedPage, Duration duration) throws Exception {
+    var deadline = System.nanoTime() + duration.toNanos();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+         var client = HttpClient.newBuilder().executor(executor).build()) {
+      var database = IntStream.range(0, DATABASE_CLIENTS)
+          .mapToObj(i -> executor.submit(() -> requestUntil(client, databasePage, deadline)))
+          .toList();
+      var cached = IntStream.range(0, CACHED_CLIENTS)
+          .mapToObj(i -> executor.submit(() -> requestUntil(client, cachedPage, deadline)))
+          .toList();
+
+      var result = new Result(new ArrayList<>(), new ArrayList<>());
+      for (var future : database) {
+        result.database().addAll(future.get());
+      }
+      for (var future : cached) {
+        result.cached().addAll(future.get());
+      }
+      return result;
+    }
+  }
+
+  // returns the latencies of all successful requests that completed before the deadline, in nanoseconds
+  private static List<Long> requestUntil(HttpClient client, URI uri, long deadline) throws Exception {
+    var latencies = new ArrayList<Long>();
+    var request = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).build();
+    while (System.nanoTime() < deadline) {
+      var start = System.nanoTime();
+      try {
+        var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        var end = System.nanoTime();
+        if (response.statusCode() == 200 && end < deadline) {
+          latencies.add(end - start);
+        }
+      } catch (HttpTimeoutException e) {
+        // counts as a failed request, a stalled server must not hang the benchmark
+      }
+    }
+    return latencies;
+  }
+
+  private void print(String name, List<Long> latencies) {
+    Collections.sort(latencies);
+    System.out.printf("%-10s %10.0f %10.1f %10.1f %10.1f%n", name,
+        latencies.size() / (double) MEASUREMENT.toSeconds(),
+        percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 1.0));
+  }
+
+  private static double percentile(List<Long> sortedLatencies, double percentile) {
+    if (sortedLatencies.isEmpty()) {
+      return Double.NaN;
+    }
+    var index = (int) Math.ceil(percentile * sortedLatencies.size()) - 1;
+    return sortedLatencies.get(Math.max(index, 0)) / 1e6;
+  }
+
+  private record Result(List<Long> database, List<Long> cached) {
+  }
+}
@@ -0,0 +1,230 @@
+package ch.hftm.relationaldatabases.transferdemo.web;
+
+import ch.hftm.relationaldatabases.transferdemo.AbstractIntegrationTest;
+import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteService;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives a mixed workload through the HTTP endpoints of {@link NoteController} at a constant arrival rate, run with
+ * {@code mvn test -Pbenchmark -Dtest=NoteControllerLoadBenchmark}. The rate, duration and mix are set with
+ * {@code -Dbenchmark.rate=500 -Dbenchmark.seconds=30 -Dbenchmark.mix=list:70,create:10,edit:15,delete:5}. List
+ * loads the first page, edit the edit page of a note, create and delete post the forms.
+ * <p>
+ * Requests are started on schedule whether or not earlier ones have completed (an open model), and each latency is
+ * measured from the time the request was due rather than from when it was sent. A server that stalls therefore shows
+ * up in the percentiles as the full wait of every request scheduled during the stall, instead of as a few slow
+ * requests while the load generator quietly backs off (coordinated omission).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NoteControllerLoadBenchmark extends AbstractIntegrationTest {
+  private static final int RATE = Integer.getInteger("benchmark.rate", 100);
+  private static final Duration WARMUP = Duration.ofSeconds(3);
+  private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 10));
+  private static final String MIX = System.getProperty("benchmark.mix", "list:70,create:10,edit:15,delete:5");
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+  // notes listed and edited; the same number again is created for the deletes, so each delete removes a note
+  private static final int NOTES = 2_000;
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private List<Note> notes;
+  private final ConcurrentLinkedQueue<UUID> deletable = new ConcurrentLinkedQueue<>();
+
+  @AfterEach
+  void cleanUp() {
+    jdbcTemplate.update("DELETE FROM notes");
+    noteService.evictAllFromCache();
+  }
+
+  @Test
+  void mixedLoad_atConstantRate_shouldReportLatencyPercentiles() throws Exception {
+    // Arrange
+    var mix = parseMix(MIX);
+    notes = createNotes(NOTES);
+    createNotes(NOTES).forEach(note -> deletable.add(note.getUuid()));
+
+    // Act
+    run(mix, WARMUP);
+    var result = run(mix, MEASUREMENT);
+
+    // Assert
+    System.out.printf("%n%s (%d req/s scheduled, %s, %ds)%n",
+        getClass().getSimpleName(), RATE, MIX, MEASUREMENT.toSeconds());
+    System.out.printf("%-8s %8s %8s %10s %10s %10s %10s%n",
+        "request", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    var total = new Histogram(3);
+    result.latencies().forEach((operation, latencies) -> {
+      print(operation.name().toLowerCase(), latencies, result.elapsed());
+      total.add(latencies);
+    });
+    print("total", total, result.elapsed());
+    System.out.printf("errors   %8d%n", result.errors());
+    assertThat(total.getTotalCount()).isPositive();
+    assertThat(result.errors()).isZero();
+  }
+
+  private Result run(Map<Operation, Integer> mix, Duration duration) {
+    var latencies = new EnumMap<Operation, Histogram>(Operation.class);
+    mix.keySet().forEach(operation -> latencies.put(operation, new ConcurrentHistogram(3)));
+    var errors = new AtomicLong();
+    var weights = mix.values().stream().mapToInt(Integer::intValue).sum();
+    var interval = 1_000_000_000L / RATE;
+    var requests = duration.toNanos() / interval;
+    var start = System.nanoTime();
+
+    // the executor is closed first, which waits for the requests still running
+    try (var client = HttpClient.newHttpClient();
+         var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (long i = 0; i < requests; i++) {
+        var due = start + i * interval;
+        LockSupport.parkNanos(due - System.nanoTime());
+        var operation = pick(mix, weights);
+        executor.submit(() -> {
+          try {
+            if (send(client, operation)) {
+              latencies.get(operation).recordValue(System.nanoTime() - due);
+            } else {
+              errors.incrementAndGet();
+            }
+          } catch (Exception e) {
+            // timeouts and refused connections
+            errors.incrementAndGet();
+          }
+        });
+      }
+    }
+    // until the last response, an overloaded server takes longer than scheduled
+    return new Result(latencies, errors.get(), Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  // The form posts answer with a redirect whether they succeeded or not, only the flash message on the page redirected
+  // to tells. The redirect is followed in the session the post started, so it is part of the measured latency.
+  private boolean send(HttpClient client, Operation operation) throws IOException, InterruptedException {
+    var response = client.send(request(operation), HttpResponse.BodyHandlers.ofString());
+    if (operation.isForm() && response.statusCode() == HttpURLConnection.HTTP_MOVED_TEMP) {
+      var location = response.uri().resolve(response.headers().firstValue(HttpHeaders.LOCATION).orElseThrow());
+      var session = response.headers().firstValue(HttpHeaders.SET_COOKIE).orElseThrow().split(";", 2)[0];
+      response = client.send(HttpRequest.newBuilder(location).timeout(REQUEST_TIMEOUT)
+          .header(HttpHeaders.COOKIE, session).build(), HttpResponse.BodyHandlers.ofString());
+    }
+    return response.statusCode() == HttpURLConnection.HTTP_OK && !response.body().contains("alert-error");
+  }
+
+  private HttpRequest request(Operation operation) {
+    var random = ThreadLocalRandom.current();
+    return switch (operation) {
+      case LIST -> get("/");
+      case CREATE -> post("/notes", "note=" + encode("Load test note " + random.nextInt()));
+      case EDIT -> get("/notes/" + notes.get(random.nextInt(notes.size())).getUuid() + "/edit");
+      case DELETE -> {
+        // deleting a note that does not exist (any more) is still a full request
+        var uuid = deletable.poll();
+        yield post("/notes/" + (uuid != null ? uuid : UUID.randomUUID()) + "/delete", "");
+      }
+    };
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(uri(path)).timeout(REQUEST_TIMEOUT).build();
+  }
+
+  private HttpRequest post(String path, String form) {
+    return HttpRequest.newBuilder(uri(path))
+        .timeout(REQUEST_TIMEOUT)
+        .header("Content-Type", "application/x-www-form-urlencoded")
+        .POST(HttpRequest.BodyPublishers.ofString(form))
+        .build();
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://localhost:" + port + path);
+  }
+
+  private List<Note> createNotes(int count) {
+    return noteService.upsertAll(IntStream.range(0, count)
+        .mapToObj(i -> Note.builder().note("Load test note " + i).build())
+        .toList());
+  }
+
+  private static Operation pick(Map<Operation, Integer> mix, int weights) {
+    var value = ThreadLocalRandom.current().nextInt(weights);
+    for (var entry : mix.entrySet()) {
+      value -= entry.getValue();
+      if (value < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("Weights do not add up");
+  }
+
+  private static Map<Operation, Integer> parseMix(String mix) {
+    var weights = new EnumMap<Operation, Integer>(Operation.class);
+    for (var part : mix.split(",")) {
+      var weight = part.split(":");
+      weights.put(Operation.valueOf(weight[0].strip().toUpperCase()), Integer.parseInt(weight[1].strip()));
+    }
+    return weights;
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  private static void print(String name, Histogram latencies, Duration elapsed) {
+    System.out.printf("%-8s %8d %8.0f %10.1f %10.1f %10.1f %10.1f%n", name, latencies.getTotalCount(),
+        latencies.getTotalCount() / (elapsed.toNanos() / 1e9),
+        latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+        latencies.getValueAtPercentile(99.9) / 1e6, latencies.getMaxValue() / 1e6);
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  private enum Operation {
+    LIST(false), CREATE(true), EDIT(false), DELETE(true);
+
+    private final boolean form;
+  }
+
+  private record Result(Map<Operation, Histogram> latencies, long errors, Duration elapsed) {
+  }
+}
@@ -1,16 +1,34 @@
 package ch.hftm.relationaldatabases.transferdemo.web;
 
 import ch.hftm.relationaldatabases.transferdemo.dtos.Note;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteCursor;
 import ch.hftm.relationaldatabases.transferdemo.dtos.NoteForm;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteImportResult;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePage;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NoteSearchCursor;
+import ch.hftm.relationaldatabases.transferdemo.jpa.entities.NoteEntity;
 import ch.hftm.relationaldatabases.transferdemo.mappers.NoteFormMapper;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteChangeFeed;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteExportService;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteFileFormat;
+import ch.hftm.relationaldatabases.transferdemo.services.NoteImportService;
 import ch.hftm.relationaldatabases.transferdemo.services.NoteService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -18,9 +36,13 @@ import java.util.UUID;
 
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -37,26 +59,36 @@ class NoteControllerTest {
   @MockitoBean
   private NoteFormMapper noteFormMapper;
 
+  @MockitoBean
+  private NoteExportService noteExportService;
+
+  @MockitoBean
+  private NoteImportService noteImportService;
+
+  @MockitoBean
+  private NoteChangeFeed noteChangeFeed;
+
   @Test
   @DisplayName("GET / should display list of notes")
   void listNotes_shouldDisplayNotesPage() throws Exception {
     // Arrange
     var notes = List.of(
-        Note.builder()
+        NotePreview.builder()
             .uuid(UUID.randomUUID())
-            .note("First test note")
+            .preview("First test note")
             .createdAt(Instant.now().minusSeconds(3600))
             .updatedAt(Instant.now().minusSeconds(1800))
             .build(),
-        Note.builder()
+        NotePreview.builder()
             .uuid(UUID.randomUUID())
-            .note("Second test note")
+            .preview("Second test note")
+            .truncated(true)
             .createdAt(Instant.now().minusSeconds(1800))
             .updatedAt(Instant.now())
             .build()
     );
 
-    when(noteService.getAll()).thenReturn(notes);
+    when(noteService.getPage(null, null)).thenReturn(NotePage.builder().notes(notes).build());
 
     // Act & Assert
     mockMvc.perform(get("/"))
@@ -64,18 +96,64 @@ class NoteControllerTest {
         .andExpect(view().name("notes/list"))
         .andExpect(model().attribute("notes", hasSize(2)))
         .andExpect(model().attribute("notes", contains(
-            hasProperty("note", is("First test note")),
-            hasProperty("note", is("Second test note"))
-        )));
+            hasProperty("preview", is("First test note")),
+            hasProperty("preview", is("Second test note"))
+        )))
+        .andExpect(content().string(containsString("First test note</p>")))
+        .andExpect(content().string(containsString("Second test note…</p>")));
+
+    verify(noteService).getPage(null, null);
+  }
+
+  @Test
+  @DisplayName("GET / with current ETag should answer 304 without loading the page")
+  void listNotes_withMatchingETag_shouldReturnNotModified() throws Exception {
+    // Arrange
+    when(noteService.getVersion()).thenReturn("1000-3");
+
+    // Act & Assert
+    mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, "\"1000-3\""))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1000-3\""))
+        .andExpect(content().string(""));
+
+    verify(noteService, never()).getPage(any(), any());
+  }
+
+  @Test
+  @DisplayName("GET / with outdated ETag should render the page with the current ETag")
+  void listNotes_withOutdatedETag_shouldRenderPageWithCurrentETag() throws Exception {
+    // Arrange
+    when(noteService.getVersion()).thenReturn("1000-4");
+    when(noteService.getPage(null, null)).thenReturn(NotePage.builder().notes(List.of()).build());
+
+    // Act & Assert
+    mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, "\"1000-3\""))
+        .andExpect(status().isOk())
+        .andExpect(view().name("notes/list"))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1000-4\""))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+  }
+
+  @Test
+  @DisplayName("GET / with flash message should render the page even if the ETag matches")
+  void listNotes_withFlashMessageAndMatchingETag_shouldRenderPage() throws Exception {
+    // Arrange
+    when(noteService.getVersion()).thenReturn("1000-3");
+    when(noteService.getPage(null, null)).thenReturn(NotePage.builder().notes(List.of()).build());
 
-    verify(noteService).getAll();
+    // Act & Assert
+    mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, "\"1000-3\"").flashAttr("success", "Note saved"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+        .andExpect(content().string(containsString("Note saved")));
   }
 
   @Test
   @DisplayName("GET / with empty notes list should display empty page")
   void listNotes_withEmptyList_shouldDisplayEmptyPage() throws Exception {
     // Arrange
-    when(noteService.getAll()).thenReturn(List.of());
+    when(noteService.getPage(null, null)).thenReturn(NotePage.builder().notes(List.of()).build());
 
     // Act & Assert
     mockMvc.perform(get("/"))
@@ -83,7 +161,278 @@ class NoteControllerTest {
         .andExpect(view().name("notes/list"))
         .andExpect(model().attribute("notes", hasSize(0)));
 
-    verify(noteService).getAll();
+    verify(noteService).getPage(null, null);
+  }
+
+  @Test
+  @DisplayName("GET / with cursor should load the following page and render pagination links")
+  void listNotes_withAfterCursor_shouldLoadNextPage() throws Exception {
+    // Arrange
+    var cursor = new NoteCursor(Instant.parse("2025-01-01T12:00:00.123456Z"), UUID.randomUUID());
+    var note = NotePreview.builder()
+        .uuid(UUID.randomUUID())
+        .preview("Older note")
+        .createdAt(Instant.parse("2025-01-01T11:00:00Z"))
+        .updatedAt(Instant.parse("2025-01-01T11:00:00Z"))
+        .build();
+    var page = NotePage.builder()
+        .notes(List.of(note))
+        .previousCursor(NoteCursor.of(note).encode())
+        .nextCursor(NoteCursor.of(note).encode())
+        .build();
+
+    when(noteService.getPage(cursor, null)).thenReturn(page);
+
+    // Act & Assert
+    mockMvc.perform(get("/").param("after", cursor.encode()))
+        .andExpect(status().isOk())
+        .andExpect(view().name("notes/list"))
+        .andExpect(model().attribute("page", page))
+        .andExpect(content().string(containsString("before=" + page.getPreviousCursor())))
+        .andExpect(content().string(containsString("after=" + page.getNextCursor())));
+
+    verify(noteService).getPage(cursor, null);
+  }
+
+  @Test
+  @DisplayName("GET / with malformed cursor should redirect with error")
+  void listNotes_withInvalidCursor_shouldRedirectWithError() throws Exception {
+    // Act & Assert
+    mockMvc.perform(get("/").param("before", "not-a-cursor"))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/"))
+        .andExpect(flash().attribute("error", "Invalid page link"));
+
+    verifyNoInteractions(noteService);
+  }
+
+  @Test
+  @DisplayName("GET /notes/search should render ranked results with a link to the next page")
+  void searchNotes_withQuery_shouldRenderResultsAndNextLink() throws Exception {
+    // Arrange
+    var note = NotePreview.builder()
+        .uuid(UUID.randomUUID())
+        .preview("Found note")
+        .createdAt(Instant.parse("2025-01-01T11:00:00Z"))
+        .updatedAt(Instant.parse("2025-01-01T11:00:00Z"))
+        .build();
+    var nextCursor = new NoteSearchCursor(0.25f, note.getUuid()).encode();
+    when(noteService.search("found", null))
+        .thenReturn(NotePage.builder().notes(List.of(note)).nextCursor(nextCursor).build());
+
+    // Act & Assert
+    mockMvc.perform(get("/notes/search").param("q", "found"))
+        .andExpect(status().isOk())
+        .andExpect(view().name("notes/search"))
+        .andExpect(model().attribute("query", "found"))
+        .andExpect(content().string(containsString("Found note</p>")))
+        .andExpect(content().string(containsString("q=found&amp;after=" + nextCursor)));
+  }
+
+  @Test
+  @DisplayName("GET /notes/search with blank query should redirect to the list")
+  void searchNotes_withBlankQuery_shouldRedirectToList() throws Exception {
+    // Act & Assert
+    mockMvc.perform(get("/notes/search").param("q", " "))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/"));
+
+    verifyNoInteractions(noteService);
+  }
+
+  @Test
+  @DisplayName("GET /notes/search with malformed cursor should redirect with error")
+  void searchNotes_withInvalidCursor_shouldRedirectWithError() throws Exception {
+    // Act & Assert
+    mockMvc.perform(get("/notes/search").param("q", "found").param("after", "not-a-cursor"))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/"))
+        .andExpect(flash().attribute("error", "Invalid page link"));
+
+    verifyNoInteractions(noteService);
+  }
+
+  @Test
+  @DisplayName("GET /notes/search?mode=contains should render substring matches without paging")
+  void searchNotes_withContainsMode_shouldRenderSubstringMatches() throws Exception {
+    // Arrange
+    var note = NotePreview.builder()
+        .uuid(UUID.randomUUID())
+        .preview("Order ORD-100_A shipped")
+        .createdAt(Instant.parse("2025-01-01T11:00:00Z"))
+        .updatedAt(Instant.parse("2025-01-01T11:00:00Z"))
+        .build();
+    when(noteService.findContaining("ORD-100_A")).thenReturn(NotePage.builder().notes(List.of(note)).build());
+
+    // Act & Assert
+    mockMvc.perform(get("/notes/search").param("q", "ORD-100_A").param("mode", "contains"))
+        .andExpect(status().isOk())
+        .andExpect(view().name("notes/search"))
+        .andExpect(model().attribute("mode", "contains"))
+        .andExpect(content().string(containsString("Order ORD-100_A shipped</p>")))
+        .andExpect(content().string(containsString("<option value=\"contains\" selected=\"selected\">")))
+        .andExpect(content().string(not(containsString("Next"))));
+
+    verify(noteService, never()).search(any(), any());
+  }
+
+  @Test
+  @DisplayName("GET /notes/search?mode=similar with too short text should redirect with error")
+  void searchNotes_withTooShortSimilarText_shouldRedirectWithError() throws Exception {
+    // Arrange
+    when(noteService.findSimilar("ab"))
+        .thenThrow(new IllegalArgumentException("Search text must be at least 3 characters long"));
+
+    // Act & Assert
+    mockMvc.perform(get("/notes/search").param("q", "ab").param("mode", "similar"))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/"))
+        .andExpect(flash().attribute("error", "Search text must be at least 3 characters long"));
+  }
+
+  @Test
+  @DisplayName("GET /notes/search with timed out statement should redirect with error")
+  void searchNotes_withStatementTimeout_shouldRedirectWithError() throws Exception {
+    // Arrange
+    when(noteService.findContaining("abc")).thenThrow(new QueryTimeoutException("canceling statement"));
+
+    // Act & Assert
+    mockMvc.perform(get("/notes/search").param("q", "abc").param("mode", "contains"))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/"))
+        .andExpect(flash().attribute("error", startsWith("Search took too long")));
+  }
+
+  @Test
+  @DisplayName("GET /notes/stream should stream changes as server-sent events")
+  void streamChanges_shouldStreamServerSentEvents() throws Exception {
+    // Arrange
+    var emitter = new SseEmitter();
+    when(noteChangeFeed.subscribe()).thenReturn(emitter);
+
+    // Act
+    var result = mockMvc.perform(get("/notes/stream"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    emitter.send(SseEmitter.event().data("{\"op\":\"INSERT\"}"));
+    emitter.complete();
+
+    // Assert
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith("text/event-stream"))
+        .andExpect(content().string("data:{\"op\":\"INSERT\"}\n\n"));
+  }
+
+  @Test
+  @DisplayName("GET /notes/export?format=csv should stream the export as attachment")
+  void exportNotes_asCsv_shouldStreamAttachment() throws Exception {
+    // Arrange
+    doAnswer(invocation -> {
+      invocation.<OutputStream>getArgument(1).write("uuid,note\n".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(noteExportService).export(eq(NoteFileFormat.CSV), any(OutputStream.class));
+
+    // Act
+    var result = mockMvc.perform(get("/notes/export").param("format", "csv"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    // Assert
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", startsWith("text/csv")))
+        .andExpect(header().string("Content-Disposition", "attachment; filename=\"notes.csv\""))
+        .andExpect(content().string("uuid,note\n"));
+
+    verify(noteExportService).export(eq(NoteFileFormat.CSV), any(OutputStream.class));
+  }
+
+  @Test
+  @DisplayName("GET /notes/export without format should default to NDJSON")
+  void exportNotes_withoutFormat_shouldDefaultToNdjson() throws Exception {
+    // Act
+    var result = mockMvc.perform(get("/notes/export"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    // Assert
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", startsWith("application/x-ndjson")));
+
+    verify(noteExportService).export(eq(NoteFileFormat.NDJSON), any(OutputStream.class));
+  }
+
+  @Test
+  @DisplayName("GET /notes/export with unknown format should return 400")
+  void exportNotes_withUnknownFormat_shouldReturnBadRequest() throws Exception {
+    // Act & Assert
+    mockMvc.perform(get("/notes/export").param("format", "xml"))
+        .andExpect(status().isBadRequest());
+
+    verifyNoInteractions(noteExportService);
+  }
+
+  @Test
+  @DisplayName("POST /notes/import with uploaded file should import and redirect with summary")
+  void importNotes_withUploadedFile_shouldRedirectWithSummary() throws Exception {
+    // Arrange
+    var file = new MockMultipartFile("file", "notes.ndjson", "application/octet-stream",
+        "{\"note\":\"Imported\"}\n".getBytes(StandardCharsets.UTF_8));
+    when(noteImportService.importNotes(eq(NoteFileFormat.NDJSON), any(InputStream.class)))
+        .thenReturn(NoteImportResult.builder().received(3).inserted(2).updated(1).build());
+
+    // Act & Assert
+    mockMvc.perform(multipart("/notes/import").file(file))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/"))
+        .andExpect(flash().attribute("success", "Imported 3 notes (2 created, 1 updated)"));
+
+    verify(noteImportService).importNotes(eq(NoteFileFormat.NDJSON), any(InputStream.class));
+  }
+
+  @Test
+  @DisplayName("POST /notes/import with unsupported file type should redirect with error")
+  void importNotes_withUnsupportedFileType_shouldRedirectWithError() throws Exception {
+    // Arrange
+    var file = new MockMultipartFile("file", "notes.xml", "application/xml", new byte[0]);
+
+    // Act & Assert
+    mockMvc.perform(multipart("/notes/import").file(file))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(flash().attribute("error", "Unsupported file type, expected .ndjson or .csv"));
+
+    verifyNoInteractions(noteImportService);
+  }
+
+  @Test
+  @DisplayName("POST /notes/import with failing import should redirect with error")
+  void importNotes_withFailingImport_shouldRedirectWithError() throws Exception {
+    // Arrange
+    var file = new MockMultipartFile("file", "notes.csv", "text/csv", "uuid,text\n".getBytes(StandardCharsets.UTF_8));
+    when(noteImportService.importNotes(eq(NoteFileFormat.CSV), any(InputStream.class)))
+        .thenThrow(new IllegalArgumentException("Invalid CSV header"));
+
+    // Act & Assert
+    mockMvc.perform(multipart("/notes/import").file(file))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(flash().attribute("error", "Error importing notes: Invalid CSV header"));
+  }
+
+  @Test
+  @DisplayName("POST /notes/import with CSV body should return the import result as JSON")
+  void importNotes_withCsvBody_shouldReturnResult() throws Exception {
+    // Arrange
+    when(noteImportService.importNotes(eq(NoteFileFormat.CSV), any(InputStream.class)))
+        .thenReturn(NoteImportResult.builder().received(1).inserted(1).updated(0).build());
+
+    // Act & Assert
+    mockMvc.perform(post("/notes/import").contentType("text/csv").content("note\nHello\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.received").value(1))
+        .andExpect(jsonPath("$.inserted").value(1))
+        .andExpect(jsonPath("$.updated").value(0));
   }
 
   @Test
@@ -110,9 +459,10 @@ class NoteControllerTest {
         .note("Existing note content")
         .createdAt(Instant.now().minusSeconds(3600))
         .updatedAt(Instant.now())
+        .version(2L)
         .build();
 
-    var noteForm = new NoteForm(noteId, "Existing note content");
+    var noteForm = new NoteForm(noteId, "Existing note content", 2L);
 
     when(noteService.findById(noteId)).thenReturn(Optional.of(existingNote));
     when(noteFormMapper.toForm(existingNote)).thenReturn(noteForm);
@@ -122,12 +472,35 @@ class NoteControllerTest {
         .andExpect(status().isOk())
         .andExpect(view().name("notes/form"))
         .andExpect(model().attribute("noteForm", noteForm))
-        .andExpect(model().attribute("isEdit", is(true)));
+        .andExpect(model().attribute("isEdit", is(true)))
+        .andExpect(content().string(containsString("name=\"version\" value=\"2\"")));
 
     verify(noteService).findById(noteId);
     verify(noteFormMapper).toForm(existingNote);
   }
 
+  @Test
+  @DisplayName("GET /notes/{uuid}/edit with current ETag should answer 304 without rendering the form")
+  void showEditForm_withMatchingETag_shouldReturnNotModified() throws Exception {
+    // Arrange
+    var noteId = UUID.randomUUID();
+    var existingNote = Note.builder()
+        .uuid(noteId)
+        .note("Existing note content")
+        .updatedAt(Instant.parse("2025-01-01T11:00:00.123456Z"))
+        .build();
+    when(noteService.findById(noteId)).thenReturn(Optional.of(existingNote));
+
+    // Act & Assert
+    mockMvc.perform(get("/notes/{uuid}/edit", noteId).header(HttpHeaders.IF_NONE_MATCH, "\"1735729200123456\""))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1735729200123456\""))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+        .andExpect(content().string(""));
+
+    verifyNoInteractions(noteFormMapper);
+  }
+
   @Test
   @DisplayName("GET /notes/{uuid}/edit with non-existent note should redirect with error")
   void showEditForm_withNonExistentNote_shouldRedirectWithError() throws Exception {
@@ -204,6 +577,25 @@ class NoteControllerTest {
     verify(noteService).upsert(noteDto);
   }
 
+  @Test
+  @DisplayName("POST /notes with outdated version should redirect to the current version with error")
+  void saveNote_withConcurrentlyChangedNote_shouldRedirectToEditFormWithError() throws Exception {
+    // Arrange
+    var noteId = UUID.randomUUID();
+    var noteDto = Note.builder().uuid(noteId).note("My edit").version(1L).build();
+    when(noteFormMapper.toDto(new NoteForm(noteId, "My edit", 1L))).thenReturn(noteDto);
+    when(noteService.upsert(noteDto)).thenThrow(new ObjectOptimisticLockingFailureException(NoteEntity.class, noteId));
+
+    // Act & Assert
+    mockMvc.perform(post("/notes")
+            .param("uuid", noteId.toString())
+            .param("note", "My edit")
+            .param("version", "1"))
+        .andExpect(status().is3xxRedirection())
+        .andExpect(redirectedUrl("/notes/" + noteId + "/edit"))
+        .andExpect(flash().attribute("error", containsString("changed by someone else")));
+  }
+
   @Test
   @DisplayName("POST /notes with empty note should still process")
   void saveNote_withEmptyNote_shouldProcess() throws Exception {
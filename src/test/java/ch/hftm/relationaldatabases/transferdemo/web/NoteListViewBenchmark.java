@@ -0,0 +1,78 @@
+package ch.hftm.relationaldatabases.transferdemo.web;
+
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePage;
+import ch.hftm.relationaldatabases.transferdemo.dtos.NotePreview;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * JMH benchmark of rendering one full page of {@code notes/list}, run with {@code mvn test -Pjmh}. The template engine
+ * is set up like Spring Boot does it, with a cached template, so only the rendering is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteListViewBenchmark {
+  // default notes.page-size
+  private static final int PAGE_SIZE = 20;
+
+  private SpringTemplateEngine templateEngine;
+  private WebContext context;
+
+  @Setup
+  public void setUp() {
+    var templateResolver = new ClassLoaderTemplateResolver();
+    templateResolver.setPrefix("templates/");
+    templateResolver.setSuffix(".html");
+    templateResolver.setTemplateMode(TemplateMode.HTML);
+    templateResolver.setCacheable(true);
+    templateEngine = new SpringTemplateEngine();
+    templateEngine.setTemplateResolver(templateResolver);
+
+    var now = Instant.now();
+    var notes = IntStream.range(0, PAGE_SIZE)
+        .mapToObj(i -> NotePreview.builder()
+            .uuid(UUID.randomUUID())
+            .preview("Benchmark note " + i + ", " + "with some more text. ".repeat(10))
+            .truncated(i % 2 == 0)
+            .createdAt(now)
+            .updatedAt(i % 2 == 0 ? now : now.plusSeconds(60))
+            .build())
+        .toList();
+    var page = NotePage.builder().notes(notes).nextCursor("next").previousCursor("previous").build();
+
+    var application = JakartaServletWebApplication.buildApplication(new MockServletContext());
+    context = new WebContext(application.buildExchange(new MockHttpServletRequest(), new MockHttpServletResponse()));
+    context.setVariable("notes", notes);
+    context.setVariable("page", page);
+  }
+
+  @Benchmark
+  public String render() {
+    return templateEngine.process("notes/list", context);
+  }
+}
@@ -0,0 +1,7 @@
+package ch.hftm.relationaldatabases.transferdemo.web;
+
+import org.junit.jupiter.api.DisplayName;
+
+@DisplayName("Platform Threads Benchmark")
+class PlatformThreadsBenchmark extends AbstractThreadingBenchmark {
+}
@@ -0,0 +1,9 @@
+package ch.hftm.relationaldatabases.transferdemo.web;
+
+import org.junit.jupiter.api.DisplayName;
+import org.springframework.test.context.ActiveProfiles;
+
+@DisplayName("Virtual Threads Benchmark")
+@ActiveProfiles("virtual-threads")
+class VirtualThreadsBenchmark extends AbstractThreadingBenchmark {
+}